@@ -0,0 +1,305 @@
+package craft.beer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * This class writes synthetic beer data files in the same 3-line
+ * format as beer-data.txt so that the parsers can be tested and
+ * benchmarked at production sizes. The data looks like the real data:
+ * <ul>
+ * <li>A limited set of breweries and beer types is repeated across the
+ * file, with a few popular ones appearing far more often than the
+ * rest.</li>
+ * <li>The ABV is between 3% and 20%.</li>
+ * <li>The number of ratings ranges from a handful to tens of thousands
+ * and is written with comma grouping, like "15,145".</li>
+ * <li>The average rating has one or two decimal places.</li>
+ * <li>The spacing on the beer type line varies the way it does in the
+ * scraped data.</li>
+ * </ul>
+ *
+ * The same seed always produces the same file. Records are written as
+ * they are generated, so any number of records can be written without
+ * holding them in memory.
+ *
+ * Run it from the command line like this:
+ *
+ * <pre>
+ mvn -Pjmh compile exec:java \
+     -Dexec.mainClass=craft.beer.BeerDataGenerator \
+     -Dexec.args="1000000 /tmp/beer-data-1000000.txt 42"
+ * </pre>
+ *
+ * @author Promineo
+ *
+ */
+public class BeerDataGenerator {
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final int MIN_ABV = 300;
+  private static final int MAX_ABV = 2000;
+  private static final int MAX_NUM_RATINGS = 40_000;
+
+  private static final String[] TYPES = {"American Imperial Stout",
+      "Imperial IPA", "New England IPA", "American IPA",
+      "Russian Imperial Stout", "American Barleywine", "Lambic",
+      "Fruit Lambic", "Gueuze", "Saison", "American Wild Ale",
+      "Belgian Quadrupel", "Belgian Tripel", "English Barleywine",
+      "American Double IPA", "Baltic Porter", "German Hefeweizen",
+      "Berliner Weisse", "Flanders Red Ale", "American Porter",
+      "Wheatwine", "Belgian Dubbel",
+      "Bière de Champagne / Bière Brut", "Oatmeal Stout",
+      "Sweet Stout", "Czech Pale Lager", "German Pilsner",
+      "Kellerbier", "Rauchbier", "Doppelbock"};
+
+  private static final String[] BREWERY_WORDS = {"Toppling", "Goliath",
+      "Hill", "Farmstead", "Perennial", "Alchemist", "Tree", "House",
+      "Side", "Project", "Trillium", "Cigar", "City", "Monkish",
+      "Other", "Half", "Fieldwork", "Cellarmaker", "Russian", "River",
+      "Cantillon", "Närke", "Kulturbryggeri", "Bottle", "Logic",
+      "Great", "Notion", "Maine", "Lawson's", "Finest", "Liquids",
+      "Floyds", "Founders", "Bell's", "Three", "Fates", "Cloudwater",
+      "Dark", "Horse", "Firestone", "Walker", "Anchorage", "Jester",
+      "King", "Kent", "Falls", "Hoof", "Hearted", "Casey", "Oxbow"};
+
+  private static final String[] BREWERY_SUFFIXES = {"Brewing Company",
+      "Brewery", "Brewing Co.", "Beer Project", "Artisan Ales",
+      "Brewing", "Ales", "Bryggeri"};
+
+  private static final String[] NAME_WORDS = {"Kentucky", "Brunch",
+      "Vanilla", "Bean", "Assassin", "Marshmallow", "Abraxas",
+      "Heady", "Topper", "Double", "Citra", "Galaxy", "Mosaic",
+      "Dark", "Lord", "Morning", "Wood", "Coffee", "Maple", "Bourbon",
+      "County", "Stout", "Pliny", "Elder", "Younger", "Focal",
+      "Banger", "Julius", "Haze", "King", "Sue", "Fundamental",
+      "Observation", "Blåbær", "Lambik", "Flora", "Weldwerks",
+      "Juicy", "Bits", "Zombie", "Dust", "Speedway", "Black",
+      "Tuesday", "Parabola", "Hunahpu's", "Bomb!", "Mornin'",
+      "Delight", "Cuvée", "Armand", "Gaston", "Oude", "Geuze"};
+
+  private static final String[] NAME_SUFFIXES = {"", "", "", "",
+      " - Barrel-Aged", " - Bourbon Barrel-Aged", " - Vanilla",
+      " - Double Barrel", " (2019)", " - Coconut"};
+
+  private static final String[] SPACES = {" ", "  "};
+
+  private final SplittableRandom random;
+  private final String[] breweries;
+
+  /* Reused to format each record. */
+  private final StringBuilder line = new StringBuilder(256);
+  private char[] chars = new char[256];
+
+  /**
+   * Create a generator.
+   *
+   * @param seed The random seed. The same seed and number of records
+   *        always produce the same file.
+   * @param numRecords The number of records that will be generated.
+   *        This sets the number of distinct breweries.
+   */
+  public BeerDataGenerator(long seed, long numRecords) {
+    this.random = new SplittableRandom(seed);
+    this.breweries = createBreweries(
+        (int) Math.min(50_000, Math.max(20, numRecords / 50)));
+  }
+
+  /**
+   * Write a beer data file.
+   *
+   * @param args The number of records, the output file and an optional
+   *        random seed.
+   * @throws IOException Thrown if the file cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    if(args.length < 2) {
+      System.err.println(
+          "Usage: BeerDataGenerator num-records output-file [seed]");
+      System.exit(1);
+    }
+
+    long numRecords = Long.parseLong(args[0]);
+    Path path = Paths.get(args[1]);
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+    long start = System.nanoTime();
+
+    new BeerDataGenerator(seed, numRecords).generate(numRecords, path);
+
+    System.out.printf("Wrote %,d records to %s in %,d ms%n", numRecords,
+        path, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Write the given number of records to a file.
+   *
+   * @param numRecords The number of records to write.
+   * @param path The file to write.
+   * @throws IOException Thrown if the file cannot be written.
+   */
+  public void generate(long numRecords, Path path) throws IOException {
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+        Files.newOutputStream(path), StandardCharsets.UTF_8),
+        BUFFER_SIZE)) {
+      generate(numRecords, writer);
+    }
+  }
+
+  /**
+   * Write the given number of records. The records are numbered from 1.
+   *
+   * @param numRecords The number of records to write.
+   * @param writer Receives the records.
+   * @throws IOException Thrown if the records cannot be written.
+   */
+  public void generate(long numRecords, Writer writer)
+      throws IOException {
+    for(long ordinal = 1; ordinal <= numRecords; ordinal++) {
+      line.setLength(0);
+      appendRecord(ordinal);
+
+      if(chars.length < line.length()) {
+        chars = new char[line.length() * 2];
+      }
+
+      line.getChars(0, line.length(), chars, 0);
+      writer.write(chars, 0, line.length());
+    }
+  }
+
+  /**
+   * Format one 3-line record into the line buffer.
+   */
+  private void appendRecord(long ordinal) {
+    line.append(ordinal).append(' ');
+    appendName();
+    line.append('\n');
+
+    line.append(breweries[skewed(breweries.length)]).append('\n');
+
+    line.append(TYPES[skewed(TYPES.length)]).append(" | ");
+    appendHundredths(abv(), 2);
+    line.append('%').append(pick(SPACES));
+    appendGrouped(numRatings());
+    line.append(pick(SPACES));
+
+    int rating = averageRating();
+
+    appendHundredths(rating, rating % 10 == 0 ? 1 : 2);
+    line.append(pick(SPACES)).append('\n');
+  }
+
+  private void appendName() {
+    int words = 1 + random.nextInt(3);
+
+    for(int word = 0; word < words; word++) {
+      if(word > 0) {
+        line.append(' ');
+      }
+
+      line.append(pick(NAME_WORDS));
+    }
+
+    line.append(pick(NAME_SUFFIXES));
+  }
+
+  /**
+   * Return an ABV in hundredths. Most beers are between 5% and 13%.
+   */
+  private int abv() {
+    double centered = (random.nextDouble() + random.nextDouble()
+        + random.nextDouble()) / 3;
+    int abv = MIN_ABV + (int) (centered * (MAX_ABV - MIN_ABV));
+
+    /* Scraped ABVs are mostly round tenths. */
+    return random.nextInt(4) == 0 ? abv : abv - abv % 10;
+  }
+
+  /**
+   * Return a rating count. Counts are spread evenly on a log scale, so
+   * there are many more beers with hundreds of ratings than with tens
+   * of thousands.
+   */
+  private int numRatings() {
+    double range = Math.log(MAX_NUM_RATINGS / 10);
+
+    return (int) Math.exp(Math.log(10) + random.nextDouble() * range);
+  }
+
+  /**
+   * Return an average rating in hundredths, between 3.50 and 4.85.
+   */
+  private int averageRating() {
+    return 350 + (int) (Math.sqrt(random.nextDouble()) * 135);
+  }
+
+  /**
+   * Return a random index that favors the start of the range, so that
+   * a few values are much more common than the rest.
+   */
+  private int skewed(int size) {
+    double u = random.nextDouble();
+
+    return (int) (size * u * u * u);
+  }
+
+  private String pick(String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private void appendHundredths(int value, int decimals) {
+    line.append(value / 100).append('.');
+
+    if(decimals == 1) {
+      line.append(value / 10 % 10);
+    }
+    else {
+      line.append(value / 10 % 10).append(value % 10);
+    }
+  }
+
+  /**
+   * Append a number with commas between each group of three digits.
+   */
+  private void appendGrouped(int value) {
+    if(value >= 1000) {
+      appendGrouped(value / 1000);
+      line.append(',');
+
+      int group = value % 1000;
+
+      line.append(group / 100).append(group / 10 % 10)
+          .append(group % 10);
+    }
+    else {
+      line.append(value);
+    }
+  }
+
+  /**
+   * Create the distinct brewery names. Every name is different.
+   */
+  private String[] createBreweries(int count) {
+    String[] names = new String[count];
+
+    for(int index = 0; index < count; index++) {
+      int words = BREWERY_WORDS.length;
+      int first = index % words;
+      int second = index / words % words;
+      int suffix = index / (words * words) % BREWERY_SUFFIXES.length;
+      int repeat = index / (words * words * BREWERY_SUFFIXES.length);
+
+      names[index] = BREWERY_WORDS[first] + " " + BREWERY_WORDS[second]
+          + (repeat > 0 ? " " + (repeat + 1) : "") + " "
+          + BREWERY_SUFFIXES[suffix];
+    }
+
+    return names;
+  }
+}
@@ -0,0 +1,53 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * This class supplies beer data files for the benchmarks. The value
+ * "bundled" means the beer-data.txt file in the classpath. A number
+ * means a synthetic file with that many records, written by
+ * {@link BeerDataGenerator} with a fixed seed. Synthetic files are
+ * written to the temp directory once and reused.
+ *
+ * @author Promineo
+ *
+ */
+class BenchmarkData {
+  static final String BUNDLED = "bundled";
+  private static final long SEED = 42;
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Return the path of the beer data file for a benchmark parameter.
+   *
+   * @param records "bundled" or the number of records.
+   * @return The path to the file.
+   * @throws IOException Thrown if the file cannot be created.
+   */
+  static Path file(String records) throws IOException {
+    if(BUNDLED.equals(records)) {
+      return Paths.get(new ClassPathResource("beer-data.txt").getURI());
+    }
+
+    long numRecords = Long.parseLong(records);
+    Path path = Paths.get(System.getProperty("java.io.tmpdir"),
+        "beer-data-" + numRecords + "-" + SEED + ".txt");
+
+    if(!Files.exists(path)) {
+      Path temp =
+          Files.createTempFile(path.getParent(), "beer", ".tmp");
+
+      new BeerDataGenerator(SEED, numRecords)
+          .generate(numRecords, temp);
+      Files.move(temp, path);
+    }
+
+    return path;
+  }
+}
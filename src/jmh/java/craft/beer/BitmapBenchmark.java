@@ -0,0 +1,92 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares filtering on beer type, ABV, average rating and brewery by
+ * combining the catalog's bitmap indexes with filtering a list of Beer
+ * objects with a stream. Each benchmark counts the beers of the most
+ * common type from 8% to 11.99% ABV, rated 4.20 or better and not from
+ * the most common brewery.
+ *
+ * @author Promineo
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class BitmapBenchmark {
+  @Param({BenchmarkData.BUNDLED, "10000000"})
+  private String records;
+
+  private BeerCatalog catalog;
+  private List<Beer> beers;
+  private String type;
+  private String brewery;
+
+  @Setup
+  public void setup() throws IOException {
+    BeerTable table = new CraftBeerService()
+        .parseBeerTable(BenchmarkData.file(records));
+
+    catalog = new BeerCatalog(table);
+    beers = new ArrayList<>(table.asList());
+    type = mostCommon(table.typeDictionary(), table.typeCodeColumn());
+    brewery = mostCommon(table.breweryDictionary(),
+        table.breweryCodeColumn());
+  }
+
+  @Benchmark
+  public int bitmapFilter() {
+    // @formatter:off
+    return catalog.typeBitmap(type)
+        .and(catalog.abvBitmap(8, 11))
+        .and(catalog.averageRatingBitmap(42, 50))
+        .andNot(catalog.breweryBitmap(brewery))
+        .cardinality();
+    // @formatter:on
+  }
+
+  @Benchmark
+  public long streamFilter() {
+    // @formatter:off
+    return beers.stream()
+        .filter(beer -> beer.getType().equals(type))
+        .filter(beer -> beer.getAbvHundredths() >= 800
+            && beer.getAbvHundredths() < 1200)
+        .filter(beer -> beer.getAverageRatingHundredths() >= 420)
+        .filter(beer -> !beer.getBrewery().equals(brewery))
+        .count();
+    // @formatter:on
+  }
+
+  private static String mostCommon(String[] dictionary, int[] column) {
+    int[] counts = new int[dictionary.length];
+    int best = 0;
+
+    for(int code : column) {
+      if(++counts[code] > counts[best]) {
+        best = code;
+      }
+    }
+
+    return dictionary[best];
+  }
+}
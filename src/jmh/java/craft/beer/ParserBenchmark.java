@@ -0,0 +1,98 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks each stage of the beer data parsing pipeline, and the
+ * complete pipeline, over files of different sizes. Run with the GC
+ * profiler (the default for the jmh profile) to see allocation rates.
+ *
+ * The parseBeerLines benchmark shows whether parsing lines that are
+ * already in memory scales linearly: its average time divided by the
+ * number of records should stay about the same from the bundled file
+ * to 10 million records. Run it on its own with
+ * -Djmh.args="ParserBenchmark.parseBeerLines -bm avgt".
+ *
+ * @author Promineo
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ParserBenchmark {
+  @Param({BenchmarkData.BUNDLED, "10000", "1000000", "10000000"})
+  private String records;
+
+  private CraftBeerService service;
+  private Path path;
+  private List<String> rawlines;
+  private List<String> lines;
+
+  @Setup
+  public void setup() throws IOException {
+    service = new CraftBeerService();
+    path = BenchmarkData.file(records);
+    rawlines = Files.readAllLines(path);
+    lines = service.concatenateLines(rawlines);
+  }
+
+  /** Reads the raw lines of the file into memory. */
+  @Benchmark
+  public List<String> loadBeerFile() throws IOException {
+    return Files.readAllLines(path);
+  }
+
+  @Benchmark
+  public List<String> concatenateLines() {
+    return service.concatenateLines(rawlines);
+  }
+
+  @Benchmark
+  public List<Beer> parseLines() {
+    return service.parseLines(lines);
+  }
+
+  /** Both in-memory stages together, as parseBeerLines() runs them. */
+  @Benchmark
+  public List<Beer> parseBeerLines() {
+    return service.parseBeerLines(rawlines);
+  }
+
+  /** The complete streaming pipeline behind parseBeerFile(). */
+  @Benchmark
+  public List<Beer> parseBeerFile() {
+    try (Stream<Beer> beers = service.streamBeerFile(path)) {
+      return beers.collect(Collectors.toList());
+    }
+  }
+
+  @Benchmark
+  public List<Beer> parseMappedBeerFile() {
+    return service.parseMappedBeerFile(path);
+  }
+
+  @Benchmark
+  public List<Beer> parseBeerFileInParallel() {
+    return service.parseBeerFileInParallel(path);
+  }
+}
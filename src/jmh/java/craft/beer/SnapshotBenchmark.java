@@ -0,0 +1,67 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares building a BeerTable by parsing the beer data file with
+ * loading the same table from a binary snapshot.
+ *
+ * @author Promineo
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SnapshotBenchmark {
+  @Param({BenchmarkData.BUNDLED, "1000000"})
+  private String records;
+
+  private Path path;
+  private Path snapshot;
+  private long checksum;
+
+  @Setup
+  public void setup() throws IOException {
+    path = BenchmarkData.file(records);
+    snapshot = Files.createTempFile("beer", ".snapshot");
+    checksum = BeerSnapshot.checksum(path);
+
+    BeerTable table = new CraftBeerService().parseBeerTable(path);
+
+    BeerSnapshot.write(table, checksum, false, snapshot);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(snapshot);
+  }
+
+  @Benchmark
+  public BeerTable parseText() {
+    return new CraftBeerService().parseBeerTable(path);
+  }
+
+  @Benchmark
+  public BeerTable loadSnapshot() throws IOException {
+    return BeerSnapshot.read(snapshot, checksum, false,
+        new SymbolTable(), new SymbolTable(), BayesianPrior.DEFAULT);
+  }
+}
@@ -0,0 +1,70 @@
+package craft.beer;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the small helper methods that the text parser calls for
+ * every field of every record.
+ *
+ * @author Promineo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TokenBenchmark {
+  private static final String LINE = "5 Heady Topper | The Alchemist | "
+      + "Imperial IPA | 8.00%  15,145  4.71  ";
+
+  private CraftBeerService service;
+  private StringBuilder builder;
+
+  @Setup
+  public void setup() {
+    service = new CraftBeerService();
+    builder = new StringBuilder(LINE.length() + 4);
+  }
+
+  @Benchmark
+  public String parseToken() {
+    builder.setLength(0);
+    builder.append(LINE);
+
+    return service.parseToken(builder, "|");
+  }
+
+  @Benchmark
+  public StringBuilder trim() {
+    builder.setLength(0);
+    builder.append("  ").append(LINE);
+    service.trim(builder);
+
+    return builder;
+  }
+
+  @Benchmark
+  public int removeComma() {
+    return service.removeComma("15,145");
+  }
+
+  @Benchmark
+  public Beer parseLine() {
+    builder.setLength(0);
+    builder.append(LINE);
+
+    return service.parseLine(builder);
+  }
+}
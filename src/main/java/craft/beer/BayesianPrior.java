@@ -0,0 +1,56 @@
+package craft.beer;
+
+import lombok.Value;
+
+/**
+ * This class holds the prior used to calculate the Bayesian score of a
+ * beer. A beer's average rating alone over-ranks beers with only a few
+ * ratings, so the score pulls each average rating toward a prior
+ * rating, as if every beer also had some number of extra ratings at
+ * the prior rating:
+ * 
+ * <pre>
+ score = (numRatings * averageRating + weight * rating)
+         / (numRatings + weight)
+ * </pre>
+ * 
+ * A beer with many more ratings than the weight scores close to its
+ * own average rating. A beer with few ratings scores close to the prior
+ * rating.
+ * 
+ * @author Promineo
+ *
+ */
+@Value
+public class BayesianPrior {
+  /** The prior used when none is configured: 4.00 over 500 ratings. */
+  public static final BayesianPrior DEFAULT =
+      new BayesianPrior(400, 500);
+
+  /** The prior rating in hundredths. */
+  private int ratingHundredths;
+
+  /** The number of ratings that the prior rating counts as. */
+  private int weight;
+
+  /**
+   * Calculate the score of a beer.
+   * 
+   * @param averageRatingHundredths The beer's average rating in
+   *        hundredths.
+   * @param numRatings The beer's number of ratings.
+   * @return The score in ten-thousandths, so 4.6875 is 46875.
+   */
+  public int score(int averageRatingHundredths, int numRatings) {
+    long total = (long) numRatings + weight;
+
+    if(total == 0) {
+      return averageRatingHundredths * 100;
+    }
+
+    double sum = (double) numRatings * averageRatingHundredths
+        + (double) weight * ratingHundredths;
+
+    return (int) Math.round(sum * 100 / total);
+  }
+}
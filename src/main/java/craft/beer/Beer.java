@@ -1,6 +1,9 @@
 package craft.beer;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.ToIntFunction;
 import lombok.Builder;
 import lombok.Value;
 
@@ -23,17 +26,264 @@ import lombok.Value;
      .build();
  * </pre>
  * 
+ * The ABV and average rating are stored as ints in hundredths (so an
+ * ABV of 12.80% is stored as 1280) instead of as BigDecimal objects.
+ * This keeps each Beer small and lets sorting and averaging work
+ * directly on the ints. The {@link #getAbv()} and
+ * {@link #getAverageRating()} methods create a BigDecimal on demand,
+ * and the builder accepts either form.
+ * 
  * @author Promineo
  *
  */
 @Value
 @Builder
 public class Beer {
+  /** Sorts Beers by ABV, lowest first. */
+  public static final Comparator<Beer> BY_ABV =
+      (a, b) -> Integer.compare(a.abvHundredths, b.abvHundredths);
+
+  /** Sorts Beers by number of ratings, lowest first. */
+  public static final Comparator<Beer> BY_NUM_RATINGS =
+      (a, b) -> Integer.compare(a.numRatings, b.numRatings);
+
+  /** Sorts Beers by average rating, lowest first. */
+  public static final Comparator<Beer> BY_AVERAGE_RATING =
+      (a, b) -> Integer.compare(a.averageRatingHundredths,
+          b.averageRatingHundredths);
+
   private int ordinal;
   private String name;
   private String brewery;
   private String type;
-  private BigDecimal abv;
+  private int abvHundredths;
   private int numRatings;
-  private BigDecimal averageRating;
+  private int averageRatingHundredths;
+
+  /**
+   * Return the ABV as a percentage with two decimal places.
+   * 
+   * @return The ABV.
+   */
+  public BigDecimal getAbv() {
+    return BigDecimal.valueOf(abvHundredths, 2);
+  }
+
+  /**
+   * Return the average rating with two decimal places.
+   * 
+   * @return The average rating.
+   */
+  public BigDecimal getAverageRating() {
+    return BigDecimal.valueOf(averageRatingHundredths, 2);
+  }
+
+  /**
+   * Average one of the hundredths columns of the given Beers. For
+   * example:
+   * 
+   * <pre>
+   BigDecimal avg = Beer.average(beers, Beer::getAbvHundredths);
+   * </pre>
+   * 
+   * @param beers The Beers to average.
+   * @param column Returns the value in hundredths for a Beer.
+   * @return The average with two decimal places, or zero if there are
+   *         no Beers.
+   */
+  public static BigDecimal average(Collection<Beer> beers,
+      ToIntFunction<Beer> column) {
+    if(beers.isEmpty()) {
+      return BigDecimal.valueOf(0, 2);
+    }
+
+    long sum = 0;
+
+    for(Beer beer : beers) {
+      sum += column.applyAsInt(beer);
+    }
+
+    return BigDecimal.valueOf(Math.round((double) sum / beers.size()),
+        2);
+  }
+
+  /**
+   * Return the key that identifies a beer from one scrape of the beer
+   * data to the next: its name and brewery. The ordinal and the ratings
+   * change between scrapes, and a beer can be given another beer type
+   * in a later scrape or in another region's data, so none of them are
+   * part of the key. {@link BeerCatalog#diff(java.util.stream.Stream)}
+   * and {@link BeerIngester} both match beers by this key.
+   * 
+   * @param name The beer name.
+   * @param brewery The brewery.
+   * @return The key.
+   */
+  public static String key(String name, String brewery) {
+    return name + '\u0000' + brewery;
+  }
+
+  /**
+   * Return the key of this beer. See {@link #key(String, String)}.
+   * 
+   * @return The key.
+   */
+  public String key() {
+    return key(name, brewery);
+  }
+
+  /**
+   * Convert a decimal value to an int in hundredths, rounding half up.
+   * The value is decoded by {@link #parseHundredths(CharSequence)}, so
+   * it is rounded exactly as the parsers round the beer data.
+   * 
+   * @param value The value to convert.
+   * @return The value in hundredths.
+   * @throws ArithmeticException Thrown if the value does not fit in an
+   *         int.
+   */
+  public static int toHundredths(BigDecimal value) {
+    String digits = value.abs().toPlainString();
+    long state = HUNDREDTHS_START;
+
+    for(int index = 0; index < digits.length(); index++) {
+      state = nextHundredths(state, digits.charAt(index));
+    }
+
+    int hundredths = hundredths(state);
+
+    if(hundredths < 0) {
+      throw new ArithmeticException("Out of range: " + value);
+    }
+
+    return value.signum() < 0 ? -hundredths : hundredths;
+  }
+
+  /**
+   * Convert a decimal number like "4.83" to an int in hundredths (483)
+   * without creating a BigDecimal. Digits after the second decimal
+   * place are rounded half up.
+   * 
+   * @param num The number to convert. It must not contain spaces.
+   * @return The number in hundredths.
+   * @throws NumberFormatException Thrown if the text is not a number or
+   *         the number does not fit in an int.
+   */
+  public static int parseHundredths(CharSequence num) {
+    long state = HUNDREDTHS_START;
+
+    for(int index = 0; index < num.length(); index++) {
+      state = nextHundredths(state, num.charAt(index));
+    }
+
+    int hundredths = hundredths(state);
+
+    if(hundredths < 0) {
+      throw new NumberFormatException("Invalid number: " + num);
+    }
+
+    return hundredths;
+  }
+
+  /*
+   * The parsers decode hundredths from chars, a byte buffer or a byte
+   * array. Rather than copy the bytes into a CharSequence, each parser
+   * runs its own loop and feeds the characters to nextHundredths. The
+   * decoding state is packed into a long: the value so far in the low
+   * 32 bits, the number of decimal places seen plus one (or zero before
+   * the decimal point) in the next three bits, a flag for whether a
+   * digit was seen, and the sign bit for an invalid number.
+   */
+
+  /** The state before the first character of a number. */
+  static final long HUNDREDTHS_START = 0;
+
+  private static final long DIGIT_SEEN = 1L << 40;
+  private static final long INVALID = Long.MIN_VALUE;
+
+  /**
+   * Decode the next character of a decimal number.
+   *
+   * @param state The state after the previous character.
+   * @param ch The next character.
+   * @return The state after this character.
+   */
+  static long nextHundredths(long state, int ch) {
+    int value = (int) state;
+    int places = (int) (state >>> 32) & 7;
+
+    if(ch == '.' && places == 0) {
+      return state | 1L << 32;
+    }
+
+    if(ch < '0' || ch > '9' || state < 0) {
+      return INVALID;
+    }
+
+    if(places < 3) {
+      if(value > (Integer.MAX_VALUE - (ch - '0')) / 10) {
+        return INVALID;
+      }
+
+      value = value * 10 + ch - '0';
+
+      return (long) (places == 0 ? 0 : places + 1) << 32 | DIGIT_SEEN
+          | value;
+    }
+
+    if(places == 3) {
+      /* Round half up on the third decimal place. */
+      if(ch >= '5' && value == Integer.MAX_VALUE) {
+        return INVALID;
+      }
+
+      return 4L << 32 | DIGIT_SEEN | value + (ch >= '5' ? 1 : 0);
+    }
+
+    return state;
+  }
+
+  /**
+   * Return the value of a decoded number.
+   *
+   * @param state The state after the last character.
+   * @return The number in hundredths, or -1 if it was not a number or
+   *         does not fit in an int.
+   */
+  static int hundredths(long state) {
+    if(state < 0 || (state & DIGIT_SEEN) == 0) {
+      return -1;
+    }
+
+    long value = (int) state;
+
+    for(int places = Math.max((int) (state >>> 32 & 7) - 1, 0);
+        places < 2; places++) {
+      value *= 10;
+    }
+
+    return value > Integer.MAX_VALUE ? -1 : (int) value;
+  }
+
+  @Override
+  public String toString() {
+    return "Beer(ordinal=" + ordinal + ", name=" + name + ", brewery="
+        + brewery + ", type=" + type + ", abv=" + getAbv()
+        + ", numRatings=" + numRatings + ", averageRating="
+        + getAverageRating() + ")";
+  }
+
+  /**
+   * Lombok fills in the rest of this builder. The methods here let the
+   * ABV and average rating be set from BigDecimal values.
+   */
+  public static class BeerBuilder {
+    public BeerBuilder abv(BigDecimal abv) {
+      return abvHundredths(toHundredths(abv));
+    }
+
+    public BeerBuilder averageRating(BigDecimal averageRating) {
+      return averageRatingHundredths(toHundredths(averageRating));
+    }
+  }
 }
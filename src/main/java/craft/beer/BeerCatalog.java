@@ -0,0 +1,1114 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+
+/**
+ * This class is an immutable, indexed view of the parsed beer data. It
+ * holds a {@link BeerTable} and the indexes that are built over it, so
+ * queries do not have to scan every beer. The indexes are built once,
+ * when the catalog is created, except for the fuzzy lookup indexes,
+ * which are built the first time they are used.
+ *
+ * Queries return row ids or lists of Beer objects. A list returned by
+ * a query creates each Beer when it is requested.
+ *
+ * When a new scrape of the beer data is mostly the same as the old
+ * one, the differences can be found with {@link #diff(Stream)} and
+ * applied with {@link #apply(BeerDiff)}. This creates a new catalog
+ * that updates the indexes and the aggregate statistics for the
+ * changed, added and removed rows only and shares everything else with
+ * this catalog. Added beers are appended to the table. Removed beers
+ * stay in the table as tombstones, which every index and query leaves
+ * out, until so many rows have been added or removed that the catalog
+ * is built again from the rows that are left.
+ *
+ * @author Promineo
+ *
+ */
+public class BeerCatalog {
+  /**
+   * The values that beers can be ranked by in a top-k query. Higher
+   * values rank first. SCORE is the Bayesian score (see
+   * {@link BayesianPrior}).
+   */
+  public enum Ranking {
+    AVERAGE_RATING, NUM_RATINGS, ABV, SCORE
+  }
+
+  /**
+   * The columns that beers can be grouped by in an aggregation.
+   */
+  public enum Grouping {
+    BREWERY, TYPE
+  }
+
+  /** The width of an ABV bucket: one percent, in hundredths. */
+  public static final int ABV_BUCKET_WIDTH = 100;
+
+  /** The width of a rating bucket: one tenth, in hundredths. */
+  public static final int RATING_BUCKET_WIDTH = 10;
+
+  /*
+   * A diff is applied by building a new catalog once more than one row
+   * in this many has been added or removed since the last build.
+   */
+  private static final int REBUILD_RATIO = 4;
+
+  private final BeerTable table;
+  private final RowBitmap removed;
+  private final HashIndex breweryIndex;
+  private final HashIndex typeIndex;
+  private final SortedIndex abvIndex;
+  private final SortedIndex averageRatingIndex;
+  private final SortedIndex numRatingsIndex;
+  private final BitmapIndex breweryBitmaps;
+  private final BitmapIndex typeBitmaps;
+  private final BitmapIndex abvBitmaps;
+  private final BitmapIndex averageRatingBitmaps;
+  private volatile FuzzyIndex nameFuzzyIndex;
+  private volatile FuzzyIndex breweryFuzzyIndex;
+  private volatile Map<String, Integer> rowsByKey;
+  private volatile GroupAggregator breweryAggregator;
+  private volatile GroupAggregator typeAggregator;
+
+  /**
+   * Create a catalog and build its indexes.
+   *
+   * @param table The beer data.
+   */
+  public BeerCatalog(BeerTable table) {
+    this.table = table;
+    this.removed = RowBitmap.empty();
+    this.breweryIndex = new HashIndex(table.breweryDictionary(),
+        table.breweryCodeColumn());
+    this.typeIndex =
+        new HashIndex(table.typeDictionary(), table.typeCodeColumn());
+    this.abvIndex = new SortedIndex(table.abvColumn());
+    this.averageRatingIndex =
+        new SortedIndex(table.averageRatingColumn());
+    this.numRatingsIndex = new SortedIndex(table.numRatingsColumn());
+    this.breweryBitmaps = new BitmapIndex(table.breweryCodeColumn(),
+        table.breweryDictionary().length);
+    this.typeBitmaps = new BitmapIndex(table.typeCodeColumn(),
+        table.typeDictionary().length);
+    this.abvBitmaps =
+        BitmapIndex.ofBuckets(table.abvColumn(), ABV_BUCKET_WIDTH);
+    this.averageRatingBitmaps = BitmapIndex.ofBuckets(
+        table.averageRatingColumn(), RATING_BUCKET_WIDTH);
+  }
+
+  /**
+   * Create a catalog from another catalog and a table made from its
+   * table by {@link BeerTable#withChanges(int[], List, int[], List)}
+   * and {@link BeerTable#withOrdinals(int[], int[])}.
+   * Each index is updated from the index of the other catalog by taking
+   * out the changed and removed rows and putting in the changed and
+   * added ones. An index whose column did not change is shared.
+   */
+  private BeerCatalog(BeerCatalog base, BeerTable table,
+      RowBitmap removed, int[] changedRows, int[] removedRows) {
+    BeerTable old = base.table;
+    int[] addedRows = new int[table.size() - old.size()];
+
+    for(int index = 0; index < addedRows.length; index++) {
+      addedRows[index] = old.size() + index;
+    }
+
+    int[] outRows = union(changedRows, removedRows);
+    int[] inRows = union(changedRows, addedRows);
+    boolean sameRows = removedRows.length == 0 && addedRows.length == 0;
+
+    this.table = table;
+    this.removed = removed;
+    this.breweryIndex = sameRows ? base.breweryIndex
+        : base.breweryIndex.update(removedRows, addedRows,
+            table.breweryDictionary(), table.breweryCodeColumn());
+    this.typeIndex = sameRows ? base.typeIndex
+        : base.typeIndex.update(removedRows, addedRows,
+            table.typeDictionary(), table.typeCodeColumn());
+    this.abvIndex = base.abvIndex.update(outRows, old.abvColumn(),
+        inRows, table.abvColumn());
+    this.averageRatingIndex = base.averageRatingIndex.update(outRows,
+        old.averageRatingColumn(), inRows, table.averageRatingColumn());
+    this.numRatingsIndex = base.numRatingsIndex.update(outRows,
+        old.numRatingsColumn(), inRows, table.numRatingsColumn());
+    this.breweryBitmaps = sameRows ? base.breweryBitmaps
+        : base.breweryBitmaps.update(removedRows,
+            old.breweryCodeColumn(), addedRows,
+            table.breweryCodeColumn(),
+            table.breweryDictionary().length);
+    this.typeBitmaps = sameRows ? base.typeBitmaps
+        : base.typeBitmaps.update(removedRows, old.typeCodeColumn(),
+            addedRows, table.typeCodeColumn(),
+            table.typeDictionary().length);
+    this.abvBitmaps = base.abvBitmaps.update(outRows, old.abvColumn(),
+        inRows, table.abvColumn(), 0);
+    this.averageRatingBitmaps = base.averageRatingBitmaps.update(
+        outRows, old.averageRatingColumn(), inRows,
+        table.averageRatingColumn(), 0);
+
+    /* Indexes over names and keys are built again when next used. */
+    if(addedRows.length == 0) {
+      this.nameFuzzyIndex = base.nameFuzzyIndex;
+    }
+
+    if(table.breweryDictionary() == old.breweryDictionary()) {
+      this.breweryFuzzyIndex = base.breweryFuzzyIndex;
+    }
+
+    if(sameRows) {
+      this.rowsByKey = base.rowsByKey;
+    }
+
+    GroupAggregator breweries = base.breweryAggregator;
+    GroupAggregator types = base.typeAggregator;
+
+    if(breweries != null) {
+      this.breweryAggregator = breweries.update(
+          table.breweryCodeColumn(), table.breweryDictionary().length,
+          outRows, inRows, old, table, breweryBitmaps);
+    }
+
+    if(types != null) {
+      this.typeAggregator = types.update(table.typeCodeColumn(),
+          table.typeDictionary().length, outRows, inRows, old, table,
+          typeBitmaps);
+    }
+  }
+
+  /**
+   * Return the table that this catalog indexes. After a diff has been
+   * applied, the table can hold rows that were removed (see
+   * {@link #isRemoved(int)}), so it is only used in this package. Use
+   * {@link #asList()} and the statistics of the catalog instead.
+   *
+   * @return The beer table.
+   */
+  BeerTable getTable() {
+    return table;
+  }
+
+  /**
+   * Return a read-only list view of the beers in the catalog, in table
+   * order, without the removed rows. Each Beer is created when it is
+   * requested.
+   *
+   * @return The list view.
+   */
+  public List<Beer> asList() {
+    return removed.isEmpty() ? table.asList() : beers(live(null));
+  }
+
+  /**
+   * Return the average ABV of the beers in the catalog. See
+   * {@link BeerTable#averageAbv()}.
+   *
+   * @return The average ABV with two decimal places.
+   */
+  public BigDecimal averageAbv() {
+    return table.averageAbv(liveRows());
+  }
+
+  /**
+   * Return the average of the average ratings of the beers in the
+   * catalog. See {@link BeerTable#averageRating()}.
+   *
+   * @return The average rating with two decimal places.
+   */
+  public BigDecimal averageRating() {
+    return table.averageRating(liveRows());
+  }
+
+  /**
+   * Count the beers in the catalog in each ABV range. See
+   * {@link BeerTable#abvHistogram(int)}.
+   *
+   * @param bucketWidthHundredths The width of each bucket in hundredths
+   *        of a percent.
+   * @return The count for each bucket, up to the bucket holding the
+   *         strongest beer.
+   */
+  public int[] abvHistogram(int bucketWidthHundredths) {
+    return table.abvHistogram(bucketWidthHundredths, liveRows());
+  }
+
+  /**
+   * Return the number of beers in the catalog, which does not count
+   * removed rows.
+   *
+   * @return The number of beers.
+   */
+  public int size() {
+    return table.size() - removed.cardinality();
+  }
+
+  /**
+   * Return true if a row of the table was removed by a diff. A removed
+   * row is never returned by a query.
+   *
+   * @param row The row number.
+   * @return True if the row was removed.
+   */
+  public boolean isRemoved(int row) {
+    return removed.contains(row);
+  }
+
+  /**
+   * Find all beers from the given brewery.
+   *
+   * @param brewery The brewery name. This must match exactly.
+   * @return The beers in catalog order.
+   */
+  public List<Beer> findByBrewery(String brewery) {
+    return beers(breweryIndex.rows(brewery));
+  }
+
+  /**
+   * Find the rows of all beers from the given brewery.
+   *
+   * @param brewery The brewery name. This must match exactly.
+   * @return The row ids in ascending order.
+   */
+  public int[] rowsByBrewery(String brewery) {
+    return breweryIndex.rows(brewery);
+  }
+
+  /**
+   * Find all beers of the given type.
+   *
+   * @param type The beer type. This must match exactly.
+   * @return The beers in catalog order.
+   */
+  public List<Beer> findByType(String type) {
+    return beers(typeIndex.rows(type));
+  }
+
+  /**
+   * Find the rows of all beers of the given type.
+   *
+   * @param type The beer type. This must match exactly.
+   * @return The row ids in ascending order.
+   */
+  public int[] rowsByType(String type) {
+    return typeIndex.rows(type);
+  }
+
+  /**
+   * Find all beers that match the ABV, average rating and rating count
+   * ranges of the query.
+   *
+   * @param query The query.
+   * @return The beers in catalog order.
+   */
+  public List<Beer> find(BeerQuery query) {
+    return beers(rows(query));
+  }
+
+  /**
+   * Find the rows of all beers that match the query. The sorted index
+   * whose range matches the fewest rows supplies the candidate rows.
+   * Each candidate is then checked against the other ranges by reading
+   * its values from the table columns, which is cheaper than fetching
+   * and intersecting the row ids from the other indexes.
+   *
+   * @param query The query.
+   * @return The row ids in ascending order.
+   */
+  public int[] rows(BeerQuery query) {
+    int minAbv = query.getMinAbvHundredths();
+    int maxAbv = query.getMaxAbvHundredths();
+    int minRating = query.getMinAverageRatingHundredths();
+    int maxRating = query.getMaxAverageRatingHundredths();
+    int minNumRatings = query.getMinNumRatings();
+    int maxNumRatings = query.getMaxNumRatings();
+
+    int abvCount = abvIndex.count(minAbv, maxAbv);
+    int ratingCount = averageRatingIndex.count(minRating, maxRating);
+    int numRatingsCount =
+        numRatingsIndex.count(minNumRatings, maxNumRatings);
+
+    int[] candidates;
+
+    if(abvCount <= ratingCount && abvCount <= numRatingsCount) {
+      candidates = abvIndex.rows(minAbv, maxAbv);
+    }
+    else if(ratingCount <= numRatingsCount) {
+      candidates = averageRatingIndex.rows(minRating, maxRating);
+    }
+    else {
+      candidates = numRatingsIndex.rows(minNumRatings, maxNumRatings);
+    }
+
+    int[] abv = table.abvColumn();
+    int[] rating = table.averageRatingColumn();
+    int[] numRatings = table.numRatingsColumn();
+    int matches = 0;
+
+    for(int row : candidates) {
+      if(query.matches(abv[row], rating[row], numRatings[row])) {
+        candidates[matches++] = row;
+      }
+    }
+
+    int[] rows = Arrays.copyOf(candidates, matches);
+
+    Arrays.sort(rows);
+
+    return rows;
+  }
+
+  /**
+   * Search the beer names. The query is split into words the same way
+   * as the names, ignoring case and punctuation, and matches names that
+   * hold the words next to each other and in the same order. The last
+   * word matches any word that starts with it, so "barrel-ag" finds
+   * "Bourbon Barrel-Aged Dark Lord".
+   *
+   * @param query The words to find.
+   * @param limit The most beers to return.
+   * @return Up to limit beers, highest average rating first. Ties are
+   *         broken by ordinal.
+   */
+  public List<Beer> searchByName(String query, int limit) {
+    return beers(top(limit, Ranking.AVERAGE_RATING, rowsByName(query),
+        row -> true));
+  }
+
+  /**
+   * Find the rows of all beers whose names match the query. See
+   * {@link #searchByName(String, int)}.
+   *
+   * @param query The words to find.
+   * @return The row ids in ascending order.
+   */
+  public int[] rowsByName(String query) {
+    int[] rows = table.rowsByName(query);
+
+    return removed.isEmpty() ? rows : live(rows);
+  }
+
+  /**
+   * Find the beers whose names are within the given edit distance of a
+   * possibly misspelled name, so "Heady Toper" finds "Heady Topper".
+   * Case is ignored.
+   *
+   * @param name The name to look for.
+   * @param maxDistance The most single character insertions, deletions
+   *        and substitutions allowed.
+   * @param limit The most beers to return.
+   * @return Up to limit beers, closest first. Beers at the same
+   *         distance are ordered by average rating, highest first.
+   */
+  public List<Beer> fuzzyFindByName(String name, int maxDistance,
+      int limit) {
+    long[] matches = nameFuzzyIndex().find(name, maxDistance);
+    int[] rows = new int[Math.min(Math.max(limit, 0), matches.length)];
+    int numRows = 0;
+
+    /* Rank each group of matches at the same distance by rating. */
+    for(int start = 0;
+        start < matches.length && numRows < rows.length;) {
+      int end = start;
+
+      while (end < matches.length
+          && matches[end] >>> 32 == matches[start] >>> 32) {
+        end++;
+      }
+
+      int[] group = new int[end - start];
+
+      for(int index = start; index < end; index++) {
+        group[index - start] = (int) matches[index];
+      }
+
+      int[] best = top(rows.length - numRows, Ranking.AVERAGE_RATING,
+          group, row -> !removed.contains(row));
+
+      System.arraycopy(best, 0, rows, numRows, best.length);
+      numRows += best.length;
+      start = end;
+    }
+
+    return beers(Arrays.copyOf(rows, numRows));
+  }
+
+  /**
+   * Find the breweries whose names are within the given edit distance
+   * of a possibly misspelled brewery name. Case is ignored.
+   *
+   * @param brewery The brewery name to look for.
+   * @param maxDistance The most single character insertions, deletions
+   *        and substitutions allowed.
+   * @param limit The most breweries to return.
+   * @return Up to limit brewery names, closest first.
+   */
+  public List<String> fuzzyFindBreweries(String brewery,
+      int maxDistance, int limit) {
+    String[] breweries = table.breweryDictionary();
+    long[] matches = breweryFuzzyIndex().find(brewery, maxDistance);
+    List<String> found = new ArrayList<>();
+
+    for(int index = 0; index < matches.length && found.size() < limit;
+        index++) {
+      String name = breweries[(int) matches[index]];
+
+      /*
+       * The dictionary can hold breweries that were in an earlier
+       * version of the beer data but have no beers in this one.
+       */
+      if(breweryIndex.count(name) > 0) {
+        found.add(name);
+      }
+    }
+
+    return found;
+  }
+
+  /**
+   * Return the rows of all beers from the given brewery as a bitmap.
+   * Bitmaps can be combined with {@link RowBitmap#and(RowBitmap)},
+   * {@link RowBitmap#or(RowBitmap)} and
+   * {@link RowBitmap#andNot(RowBitmap)} to filter on several columns at
+   * once. For example, the strong stouts that are not from one brewery
+   * are:
+   *
+   * <pre>
+   catalog.typeBitmap("Russian Imperial Stout")
+       .and(catalog.abvBitmap(10, 14))
+       .andNot(catalog.breweryBitmap("Goose Island Beer Co."));
+   * </pre>
+   *
+   * @param brewery The brewery name. This must match exactly.
+   * @return The rows.
+   */
+  public RowBitmap breweryBitmap(String brewery) {
+    return breweryBitmaps.rows(breweryIndex.code(brewery));
+  }
+
+  /**
+   * Return the rows of all beers of the given type as a bitmap.
+   *
+   * @param type The beer type. This must match exactly.
+   * @return The rows.
+   */
+  public RowBitmap typeBitmap(String type) {
+    return typeBitmaps.rows(typeIndex.code(type));
+  }
+
+  /**
+   * Return the rows of all beers in a range of ABV buckets as a bitmap.
+   * Bucket n holds the beers with an ABV from n% (inclusive) up to
+   * (n + 1)% (exclusive), so abvBitmap(8, 9) finds the beers from 8.00%
+   * to 9.99%.
+   *
+   * @param minBucket The first bucket (inclusive).
+   * @param maxBucket The last bucket (inclusive).
+   * @return The rows.
+   */
+  public RowBitmap abvBitmap(int minBucket, int maxBucket) {
+    return abvBitmaps.rows(minBucket, maxBucket);
+  }
+
+  /**
+   * Return the rows of all beers in a range of average rating buckets
+   * as a bitmap. Bucket n holds the beers with an average rating from
+   * n / 10 (inclusive) up to (n + 1) / 10 (exclusive), so
+   * averageRatingBitmap(42, 44) finds the beers rated 4.20 to 4.49.
+   *
+   * @param minBucket The first bucket (inclusive).
+   * @param maxBucket The last bucket (inclusive).
+   * @return The rows.
+   */
+  public RowBitmap averageRatingBitmap(int minBucket, int maxBucket) {
+    return averageRatingBitmaps.rows(minBucket, maxBucket);
+  }
+
+  /**
+   * Find the k beers with the highest Bayesian score. The table keeps
+   * its rows in score order, so this reads the first k of them instead
+   * of sorting. Ties are in catalog order.
+   *
+   * @param k The number of beers to return.
+   * @return Up to k beers, best first.
+   */
+  public List<Beer> topByScore(int k) {
+    int[] order = table.scoreOrder();
+
+    return beers(Arrays.copyOf(order,
+        Math.min(Math.max(k, 0), order.length)));
+  }
+
+  /**
+   * Find the k beers of the given type with the highest average
+   * rating. Ties are broken by ordinal.
+   *
+   * @param k The number of beers to return.
+   * @param type The beer type. This must match exactly.
+   * @return Up to k beers, best first.
+   */
+  public List<Beer> topRatedOfType(int k, String type) {
+    return beers(top(k, Ranking.AVERAGE_RATING, typeIndex.rows(type),
+        row -> true));
+  }
+
+  /**
+   * Find the k beers from the given brewery with the most ratings. Ties
+   * are broken by ordinal.
+   *
+   * @param k The number of beers to return.
+   * @param brewery The brewery name. This must match exactly.
+   * @return Up to k beers, best first.
+   */
+  public List<Beer> mostRatedFromBrewery(int k, String brewery) {
+    return beers(top(k, Ranking.NUM_RATINGS, breweryIndex.rows(brewery),
+        row -> true));
+  }
+
+  /**
+   * Find the k best beers by the given ranking among the beers that
+   * pass the filter. Ties are broken by ordinal. The filter is given
+   * row ids, so code in this package can test the table columns without
+   * creating Beer objects. For example:
+   *
+   * <pre>
+   BeerTable table = catalog.getTable();
+   catalog.top(10, Ranking.AVERAGE_RATING,
+       row -> table.getAbvHundredths(row) >= 1000);
+   * </pre>
+   *
+   * @param k The number of beers to return.
+   * @param ranking The value to rank by.
+   * @param filter Returns true for the rows to consider.
+   * @return Up to k beers, best first.
+   */
+  public List<Beer> top(int k, Ranking ranking, IntPredicate filter) {
+    TopK topK = new TopK(k, column(ranking), table.ordinalColumn());
+
+    for(int row = 0; row < table.size(); row++) {
+      if(!removed.contains(row) && filter.test(row)) {
+        topK.offer(row);
+      }
+    }
+
+    return beers(topK.toSortedArray());
+  }
+
+  /**
+   * Find the k best candidate rows by the given ranking.
+   *
+   * @param k The number of rows to return.
+   * @param ranking The value to rank by.
+   * @param candidates The rows to consider.
+   * @param filter Returns true for the candidates to keep.
+   * @return Up to k row ids, best first.
+   */
+  int[] top(int k, Ranking ranking, int[] candidates,
+      IntPredicate filter) {
+    TopK topK = new TopK(k, column(ranking), table.ordinalColumn());
+
+    for(int row : candidates) {
+      if(filter.test(row)) {
+        topK.offer(row);
+      }
+    }
+
+    return topK.toSortedArray();
+  }
+
+  /**
+   * Calculate statistics for each brewery or beer type: the number of
+   * beers, the mean ABV, the average rating weighted by the number of
+   * ratings and the highest average rating. Large catalogs are
+   * aggregated in parallel. The result is kept, and a catalog created
+   * by {@link #apply(BeerDiff)} updates it for the changed rows.
+   *
+   * @param grouping The column to group by.
+   * @return The statistics for each group that has beers.
+   */
+  public List<BeerGroupStats> aggregate(Grouping grouping) {
+    return aggregate(grouping, null);
+  }
+
+  /**
+   * Calculate statistics for each brewery or beer type over some of the
+   * beers, such as the rows found by {@link #rows(BeerQuery)}. See
+   * {@link #aggregate(Grouping)}.
+   *
+   * @param grouping The column to group by.
+   * @param rows The rows to include in ascending order, or null for all
+   *        rows.
+   * @return The statistics for each group that has beers.
+   */
+  public List<BeerGroupStats> aggregate(Grouping grouping, int[] rows) {
+    String[] dictionary = grouping == Grouping.BREWERY
+        ? table.breweryDictionary() : table.typeDictionary();
+
+    if(rows == null) {
+      return aggregator(grouping).toStats(dictionary);
+    }
+
+    return GroupAggregator
+        .aggregate(table, groups(grouping), dictionary.length, rows)
+        .toStats(dictionary);
+  }
+
+  /**
+   * Find the differences between the beers in this catalog and a newer
+   * scrape of the beer data. Beers are matched by name and brewery
+   * (see {@link Beer#key()}), so the ordinals can change without every
+   * beer being treated as new. A beer whose type changed is removed and
+   * added, so that it moves between the type indexes. The new beers are
+   * read once and are not kept, except for the ones that changed or
+   * were added.
+   *
+   * @param beers The beers in the new data.
+   * @return The differences.
+   */
+  public BeerDiff diff(Stream<Beer> beers) {
+    Differ differ = new Differ();
+
+    beers.forEach(differ);
+
+    return differ.finish();
+  }
+
+  /**
+   * Find the differences between the beers in this catalog and a beer
+   * data file in any of the supported formats. See
+   * {@link #diff(Stream)}.
+   *
+   * @param source The new beer data.
+   * @param diagnostics Collects the bad records, or null to throw an
+   *        exception at the first one.
+   * @return The differences.
+   */
+  public BeerDiff diff(BeerSource source,
+      ParseDiagnostics diagnostics) {
+    Differ differ = new Differ();
+
+    try {
+      source.read(differ, diagnostics);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return differ.finish();
+  }
+
+  /**
+   * Apply a diff and return the updated catalog. Only the changed,
+   * added and removed rows are read: the sorted indexes and the score
+   * order splice them into their existing order, the bitmaps of the
+   * keys and buckets that rows moved between are rebuilt, the brewery
+   * and type indexes splice them into the rows of their codes, and the
+   * aggregate statistics subtract the old values and add the new ones.
+   * Beers that only moved get their new ordinals in a copy of the
+   * ordinal column, and no index is touched for them. Added beers are
+   * appended to the table and removed beers are left in
+   * it as tombstones. Once more than a quarter of the rows have been
+   * added or removed since the catalog was built, a new catalog is
+   * built from the rows that are left instead. This catalog is not
+   * changed, so queries that are using it are not affected.
+   *
+   * @param diff A diff made by {@link #diff(Stream)} on this catalog.
+   * @return The new catalog, or this catalog if the diff is empty.
+   * @throws IllegalArgumentException Thrown if the diff was made on
+   *         another catalog.
+   */
+  public BeerCatalog apply(BeerDiff diff) {
+    if(diff.table() != table) {
+      throw new IllegalArgumentException(
+          "The diff was not made on this catalog");
+    }
+
+    if(diff.isEmpty()) {
+      return this;
+    }
+
+    int[] removedRows = diff.removedRows();
+    BeerTable updated = diff.size() == 0 ? table
+        : table.withChanges(diff.changedRows(), diff.getChanged(),
+            removedRows, diff.getAdded());
+
+    if(diff.getNumMoved() > 0) {
+      updated =
+          updated.withOrdinals(diff.movedRows(), diff.movedOrdinals());
+    }
+
+    RowBitmap allRemoved = removedRows.length == 0 ? removed
+        : removed.or(RowBitmap.of(removedRows));
+    long churn = allRemoved.cardinality()
+        + (long) updated.size() - updated.indexedRows();
+
+    if(churn * REBUILD_RATIO > updated.size()) {
+      return new BeerCatalog(updated.compact(allRemoved));
+    }
+
+    return new BeerCatalog(this, updated, allRemoved,
+        diff.changedRows(), removedRows);
+  }
+
+  /**
+   * Return true if the ABV or ratings of a beer changed. The ordinal is
+   * not compared: it is the beer's rank in the scrape, so one beer
+   * added near the top changes the ordinal of every beer after it.
+   */
+  private boolean changed(int row, Beer beer) {
+    return table.getAbvHundredths(row) != beer.getAbvHundredths()
+        || table.getNumRatings(row) != beer.getNumRatings()
+        || table.getAverageRatingHundredths(row) != beer
+            .getAverageRatingHundredths();
+  }
+
+  private boolean sameType(int row, Beer beer) {
+    return table.typeDictionary()[table.typeCodeColumn()[row]]
+        .equals(beer.getType());
+  }
+
+  /**
+   * Return the row of each beer by its name and brewery. The second
+   * beer with the same key has the suffix "\0" + 1, the third "\0" + 2,
+   * and so on. The map is built on first use.
+   */
+  private Map<String, Integer> rowsByKey() {
+    Map<String, Integer> keys = rowsByKey;
+
+    if(keys == null) {
+      synchronized (this) {
+        keys = rowsByKey;
+
+        if(keys == null) {
+          String[] names = table.nameColumn();
+          String[] breweries = table.breweryDictionary();
+          int[] breweryCodes = table.breweryCodeColumn();
+
+          keys = new HashMap<>(table.size() * 4 / 3 + 1);
+
+          for(int row = 0; row < table.size(); row++) {
+            if(removed.contains(row)) {
+              continue;
+            }
+
+            String key =
+                Beer.key(names[row], breweries[breweryCodes[row]]);
+            String unique = key;
+
+            for(int occurrence = 1; keys.containsKey(unique);
+                occurrence++) {
+              unique = key + '\u0000' + occurrence;
+            }
+
+            keys.put(unique, row);
+          }
+
+          rowsByKey = keys;
+        }
+      }
+    }
+
+    return keys;
+  }
+
+  private GroupAggregator aggregator(Grouping grouping) {
+    GroupAggregator aggregator = grouping == Grouping.BREWERY
+        ? breweryAggregator : typeAggregator;
+
+    if(aggregator == null) {
+      int numGroups = grouping == Grouping.BREWERY
+          ? table.breweryDictionary().length
+          : table.typeDictionary().length;
+
+      /*
+       * Two threads may both aggregate, but they get the same result,
+       * so either may be kept.
+       */
+      aggregator = GroupAggregator.aggregate(table, groups(grouping),
+          numGroups, removed.isEmpty() ? null : live(null));
+
+      if(grouping == Grouping.BREWERY) {
+        breweryAggregator = aggregator;
+      }
+      else {
+        typeAggregator = aggregator;
+      }
+    }
+
+    return aggregator;
+  }
+
+  /**
+   * Return the rows that were not removed, out of the given rows in
+   * ascending order or out of every row if rows is null.
+   */
+  private int[] live(int[] rows) {
+    int size = rows == null ? table.size() : rows.length;
+    int[] live = new int[size];
+    int numLive = 0;
+
+    for(int index = 0; index < size; index++) {
+      int row = rows == null ? index : rows[index];
+
+      if(!removed.contains(row)) {
+        live[numLive++] = row;
+      }
+    }
+
+    return Arrays.copyOf(live, numLive);
+  }
+
+  /**
+   * Return the rows that were not removed, or null if none were, which
+   * the whole-table methods of {@link BeerTable} take to mean every
+   * row.
+   */
+  private int[] liveRows() {
+    return removed.isEmpty() ? null : live(null);
+  }
+
+  /**
+   * Merge two ascending arrays of distinct rows into one.
+   */
+  private static int[] union(int[] first, int[] second) {
+    int[] union = new int[first.length + second.length];
+    int size = 0;
+    int next = 0;
+
+    for(int row : first) {
+      while (next < second.length && second[next] < row) {
+        union[size++] = second[next++];
+      }
+
+      if(next < second.length && second[next] == row) {
+        next++;
+      }
+
+      union[size++] = row;
+    }
+
+    while (next < second.length) {
+      union[size++] = second[next++];
+    }
+
+    return Arrays.copyOf(union, size);
+  }
+
+  private int[] groups(Grouping grouping) {
+    return grouping == Grouping.BREWERY ? table.breweryCodeColumn()
+        : table.typeCodeColumn();
+  }
+
+  private FuzzyIndex nameFuzzyIndex() {
+    FuzzyIndex index = nameFuzzyIndex;
+
+    if(index == null) {
+      synchronized (this) {
+        index = nameFuzzyIndex;
+
+        if(index == null) {
+          index = new FuzzyIndex(table.nameColumn());
+          nameFuzzyIndex = index;
+        }
+      }
+    }
+
+    return index;
+  }
+
+  private FuzzyIndex breweryFuzzyIndex() {
+    FuzzyIndex index = breweryFuzzyIndex;
+
+    if(index == null) {
+      synchronized (this) {
+        index = breweryFuzzyIndex;
+
+        if(index == null) {
+          index = new FuzzyIndex(table.breweryDictionary());
+          breweryFuzzyIndex = index;
+        }
+      }
+    }
+
+    return index;
+  }
+
+  private int[] column(Ranking ranking) {
+    switch (ranking) {
+      case AVERAGE_RATING:
+        return table.averageRatingColumn();
+
+      case NUM_RATINGS:
+        return table.numRatingsColumn();
+
+      case ABV:
+        return table.abvColumn();
+
+      case SCORE:
+        return table.scoreColumn();
+
+      default:
+        throw new IllegalArgumentException(
+            "Unknown ranking " + ranking);
+    }
+  }
+
+  /**
+   * Return a list view of the rows in a bitmap. Each Beer is created
+   * when it is requested.
+   *
+   * @param rows The rows.
+   * @return The list view, in catalog order.
+   */
+  public List<Beer> beers(RowBitmap rows) {
+    return beers(rows.toArray());
+  }
+
+  /**
+   * Return a list view of the given rows. Each Beer is created when it
+   * is requested.
+   *
+   * @param rows The row ids.
+   * @return The list view.
+   */
+  public List<Beer> beers(int[] rows) {
+    return new AbstractList<>() {
+      @Override
+      public Beer get(int index) {
+        return table.getBeer(rows[index]);
+      }
+
+      @Override
+      public int size() {
+        return rows.length;
+      }
+    };
+  }
+
+  /**
+   * Matches each beer of the new data to a row of this catalog as it
+   * is read, and collects the differences.
+   */
+  private class Differ implements Consumer<Beer> {
+    private final Map<String, Integer> keys = rowsByKey();
+    private final boolean[] matched = new boolean[table.size()];
+    private int[] changedRows = new int[16];
+    private final List<Beer> changed = new ArrayList<>();
+    private final List<Beer> added = new ArrayList<>();
+    private int[] movedRows = new int[16];
+    private int[] movedOrdinals = new int[16];
+    private int numMoved;
+
+    @Override
+    public void accept(Beer beer) {
+      String key = beer.key();
+      Integer row = null;
+
+      /*
+       * A beer is only matched to a row of the same type. A beer with
+       * the same key as other beers is matched to an unmatched one with
+       * the same values if there is one, so reordering duplicates does
+       * not change them.
+       */
+      for(int occurrence = 0;; occurrence++) {
+        Integer candidate = keys.get(
+            occurrence == 0 ? key : key + '\u0000' + occurrence);
+
+        if(candidate == null) {
+          break;
+        }
+
+        if(matched[candidate] || !sameType(candidate, beer)) {
+          continue;
+        }
+
+        if(row == null) {
+          row = candidate;
+        }
+
+        if(!changed(candidate, beer)) {
+          row = candidate;
+          break;
+        }
+      }
+
+      if(row == null) {
+        added.add(beer);
+        return;
+      }
+
+      matched[row] = true;
+
+      if(changed(row, beer)) {
+        if(changed.size() == changedRows.length) {
+          changedRows = Arrays.copyOf(changedRows, changed.size() * 2);
+        }
+
+        changedRows[changed.size()] = row;
+        changed.add(beer);
+      }
+      else if(table.getOrdinal(row) != beer.getOrdinal()) {
+        if(numMoved == movedRows.length) {
+          movedRows = Arrays.copyOf(movedRows, numMoved * 2);
+          movedOrdinals = Arrays.copyOf(movedOrdinals, numMoved * 2);
+        }
+
+        movedRows[numMoved] = row;
+        movedOrdinals[numMoved++] = beer.getOrdinal();
+      }
+    }
+
+    /**
+     * Find the removed beers and return the differences.
+     */
+    BeerDiff finish() {
+      List<Beer> removedBeers = new ArrayList<>();
+      int[] removedRows = new int[16];
+
+      for(int row = 0; row < matched.length; row++) {
+        if(!matched[row] && !removed.contains(row)) {
+          if(removedBeers.size() == removedRows.length) {
+            removedRows =
+                Arrays.copyOf(removedRows, removedBeers.size() * 2);
+          }
+
+          removedRows[removedBeers.size()] = row;
+          removedBeers.add(table.getBeer(row));
+        }
+      }
+
+      /* Put the changed rows in ascending order. */
+      int numChanged = changed.size();
+      long[] order = new long[numChanged];
+
+      for(int index = 0; index < numChanged; index++) {
+        order[index] = (long) changedRows[index] << 32 | index;
+      }
+
+      Arrays.sort(order);
+
+      int[] rows = new int[numChanged];
+      List<Beer> sorted = new ArrayList<>(numChanged);
+
+      for(int index = 0; index < numChanged; index++) {
+        rows[index] = (int) (order[index] >>> 32);
+        sorted.add(changed.get((int) order[index]));
+      }
+
+      return new BeerDiff(table, rows, sorted, added,
+          Arrays.copyOf(removedRows, removedBeers.size()),
+          removedBeers, Arrays.copyOf(movedRows, numMoved),
+          Arrays.copyOf(movedOrdinals, numMoved));
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package craft.beer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class describes the differences between the beers in a
+ * {@link BeerCatalog} and a newer scrape of the beer data. It is
+ * created by {@link BeerCatalog#diff(java.util.stream.Stream)}.
+ *
+ * Beers are matched by name and brewery (see {@link Beer#key()}). A
+ * matched beer is changed if its ABV, rating count or average rating is
+ * different. A beer that is only in the new data is added, and a beer
+ * that is only in the catalog is removed. A beer whose type changed is
+ * removed and added, so the catalog still has one row for it after the
+ * diff is applied.
+ *
+ * A matched beer whose only difference is its ordinal has moved. The
+ * ordinal is the beer's rank in the scrape, so one beer added near the
+ * top moves every beer after it. Moved beers are not changed beers:
+ * applying the diff writes their new ordinals into a copy of the
+ * ordinal column, which no index depends on, so the cost of an update
+ * still grows with the number of changed, added and removed beers.
+ *
+ * A diff can be applied to the catalog with
+ * {@link BeerCatalog#apply(BeerDiff)}, which updates the indexes for
+ * the changed, added and removed rows instead of building them again.
+ *
+ * A BeerDiff is immutable.
+ *
+ * @author Promineo
+ *
+ */
+public class BeerDiff {
+  private final BeerTable table;
+  private final int[] changedRows;
+  private final List<Beer> changed;
+  private final List<Beer> added;
+  private final List<Beer> removed;
+  private final int[] removedRows;
+  private final int[] movedRows;
+  private final int[] movedOrdinals;
+
+  BeerDiff(BeerTable table, int[] changedRows, List<Beer> changed,
+      List<Beer> added, int[] removedRows, List<Beer> removed,
+      int[] movedRows, int[] movedOrdinals) {
+    this.table = table;
+    this.changedRows = changedRows;
+    this.removedRows = removedRows;
+    this.movedRows = movedRows;
+    this.movedOrdinals = movedOrdinals;
+    this.changed = Collections.unmodifiableList(changed);
+    this.added = Collections.unmodifiableList(added);
+    this.removed = Collections.unmodifiableList(removed);
+  }
+
+  /**
+   * Return the new values of the changed beers.
+   *
+   * @return The changed beers in catalog order.
+   */
+  public List<Beer> getChanged() {
+    return changed;
+  }
+
+  /**
+   * Return the beers that are in the new data but not in the catalog.
+   *
+   * @return The added beers in the order of the new data.
+   */
+  public List<Beer> getAdded() {
+    return added;
+  }
+
+  /**
+   * Return the beers that are in the catalog but not in the new data.
+   *
+   * @return The removed beers in catalog order.
+   */
+  public List<Beer> getRemoved() {
+    return removed;
+  }
+
+  /**
+   * Return the number of beers whose ordinal is the only difference.
+   *
+   * @return The number of moved beers.
+   */
+  public int getNumMoved() {
+    return movedRows.length;
+  }
+
+  /**
+   * Return the number of changed, added and removed beers. Moved beers
+   * are not counted.
+   *
+   * @return The number of differences.
+   */
+  public int size() {
+    return changed.size() + added.size() + removed.size();
+  }
+
+  /**
+   * Return true if the new data holds exactly the same beers as the
+   * catalog, with the same ordinals.
+   *
+   * @return True if there are no differences.
+   */
+  public boolean isEmpty() {
+    return size() == 0 && movedRows.length == 0;
+  }
+
+  /**
+   * Return the table that the diff was made against.
+   */
+  BeerTable table() {
+    return table;
+  }
+
+  /**
+   * Return the row of each changed beer, in ascending order.
+   */
+  int[] changedRows() {
+    return changedRows;
+  }
+
+  /**
+   * Return the row of each removed beer, in ascending order.
+   */
+  int[] removedRows() {
+    return removedRows;
+  }
+
+  /**
+   * Return the row of each moved beer, in the order of the new data.
+   */
+  int[] movedRows() {
+    return movedRows;
+  }
+
+  /**
+   * Return the new ordinal of each moved beer.
+   */
+  int[] movedOrdinals() {
+    return movedOrdinals;
+  }
+
+  @Override
+  public String toString() {
+    return "BeerDiff(changed=" + changed.size() + ", added="
+        + added.size() + ", removed=" + removed.size() + ", moved="
+        + movedRows.length + ")";
+  }
+}
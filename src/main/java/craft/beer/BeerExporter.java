@@ -0,0 +1,80 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class converts a beer data file to JSON Lines or CSV for
+ * systems downstream. The file may be in any format that
+ * {@link BeerSource} reads. Each beer is handed straight from the
+ * reader to a {@link BeerWriter}, so only the current record and the
+ * buffers are held in memory. No list of beers is built, no matter how
+ * large the file is. Bad records are skipped and logged in lenient
+ * mode, as they are when the beer data is loaded.
+ *
+ * @Service This tells Spring to manage the lifecycle of this class as
+ *          a managed bean.
+ *
+ * @author Promineo
+ *
+ */
+@Service
+public class BeerExporter {
+  private static final Logger log =
+      LoggerFactory.getLogger(BeerExporter.class);
+
+  @Autowired
+  private CraftBeerService craftBeerService;
+
+  /**
+   * Export a beer data file. The output is compressed with gzip if the
+   * target file name ends with ".gz".
+   *
+   * @param source The beer data file to read.
+   * @param target The file to write. It is replaced if it exists.
+   * @param format The format to write.
+   * @return The number of beers written.
+   */
+  public long export(Path source, Path target, BeerFormat format) {
+    return export(source, target, format,
+        target.getFileName().toString().endsWith(".gz"));
+  }
+
+  /**
+   * Export a beer data file.
+   *
+   * @param source The beer data file to read.
+   * @param target The file to write. It is replaced if it exists.
+   * @param format The format to write.
+   * @param gzip True to compress the output with gzip.
+   * @return The number of beers written.
+   */
+  public long export(Path source, Path target, BeerFormat format,
+      boolean gzip) {
+    long start = System.nanoTime();
+    long count;
+
+    BeerSource beers = craftBeerService.openBeerSource(source);
+    ParseDiagnostics diagnostics = craftBeerService.newDiagnostics();
+
+    try (BeerWriter writer = BeerWriter.open(target, format, gzip)) {
+      beers.read(writer::write, diagnostics);
+      count = writer.getCount();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    craftBeerService.logDiagnostics(source, diagnostics);
+
+    log.info("Exported {} beers from {} to {} in {} ms", count, source,
+        target, (System.nanoTime() - start) / 1_000_000);
+
+    return count;
+  }
+}
@@ -0,0 +1,184 @@
+package craft.beer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * This class reloads the beer catalog when the beer data file changes,
+ * so a new scrape is picked up without restarting the application. It
+ * watches the directory that holds the beer data file with a
+ * {@link WatchService}. When the file is created or modified, the
+ * watcher waits until the file has been quiet for a short delay, so a
+ * file that is still being written is not parsed, and then calls
+ * {@link BeerRepository#update()} on its own background thread. A
+ * scrape that only changes ratings is applied to the current catalog,
+ * and one that adds or removes beers builds a new catalog.
+ *
+ * The repository builds the new catalog completely before it replaces
+ * the old one, so readers never wait for a reload and never see a
+ * partly loaded catalog. If the new file cannot be parsed, the old
+ * catalog is kept. The safest way to publish a new file is to write it
+ * next to the old one and rename it into place.
+ *
+ * Reloading is turned on by the craft.beer.reload.enabled property.
+ * The beer data file must be a file on disk (see the
+ * craft.beer.data.file property), not a resource inside a jar.
+ *
+ * @Service This tells Spring to manage the lifecycle of this class as
+ *          a managed bean.
+ *
+ * @author Promineo
+ *
+ */
+@Service
+public class BeerFileWatcher {
+  private static final Logger log =
+      LoggerFactory.getLogger(BeerFileWatcher.class);
+
+  @Autowired
+  private CraftBeerService craftBeerService;
+
+  @Autowired
+  private BeerRepository beerRepository;
+
+  /** Turns on reloading when the beer data file changes. */
+  @Value("${craft.beer.reload.enabled:false}")
+  private boolean enabled;
+
+  /**
+   * How long the beer data file must go without changes before it is
+   * reloaded, in milliseconds.
+   */
+  @Value("${craft.beer.reload.delay-ms:500}")
+  private long delayMillis;
+
+  private WatchService watchService;
+  private Thread thread;
+
+  /**
+   * Start watching the beer data file if reloading is turned on.
+   * Spring calls this once the dependencies have been injected.
+   */
+  @PostConstruct
+  public void start() {
+    if(!enabled) {
+      return;
+    }
+
+    Path file = craftBeerService.getBeerFilePath().toAbsolutePath();
+
+    try {
+      watchService = file.getFileSystem().newWatchService();
+      file.getParent().register(watchService, ENTRY_CREATE,
+          ENTRY_MODIFY);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    thread = new Thread(() -> watch(file), "beer-file-watcher");
+    thread.setDaemon(true);
+    thread.start();
+
+    log.info("Watching {} for changes", file);
+  }
+
+  /**
+   * Stop watching. Spring calls this when the application shuts down.
+   */
+  @PreDestroy
+  public void stop() {
+    if(watchService == null) {
+      return;
+    }
+
+    try {
+      watchService.close();
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Wait for changes to the file and reload it after each one. This
+   * runs until the watch service is closed.
+   */
+  private void watch(Path file) {
+    try {
+      while (true) {
+        if(!changed(watchService.take(), file)) {
+          continue;
+        }
+
+        /* Wait for the file to be quiet before reloading it. */
+        WatchKey key;
+
+        while ((key = watchService.poll(delayMillis,
+            TimeUnit.MILLISECONDS)) != null) {
+          changed(key, file);
+        }
+
+        reload(file);
+      }
+    }
+    catch (ClosedWatchServiceException e) {
+      log.info("Stopped watching {}", file);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Return true if any of the key's events are for the file. The key is
+   * reset so that it reports later events.
+   */
+  private boolean changed(WatchKey key, Path file) {
+    boolean changed = false;
+
+    for(WatchEvent<?> event : key.pollEvents()) {
+      changed |= event.kind() == OVERFLOW
+          || file.getFileName().equals(event.context());
+    }
+
+    key.reset();
+
+    return changed;
+  }
+
+  private void reload(Path file) {
+    long start = System.nanoTime();
+
+    try {
+      BeerCatalog catalog = beerRepository.update();
+
+      log.info("Updated {} beers from {} in {} ms", catalog.size(),
+          file, (System.nanoTime() - start) / 1_000_000);
+    }
+    catch (RuntimeException e) {
+      log.error("Could not reload {}. Keeping the current catalog.",
+          file, e);
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package craft.beer;
+
+/**
+ * The formats that {@link BeerWriter} can write beers in. Each format
+ * appends a beer to a StringBuilder by hand. Numbers are appended as
+ * ints, and the ABV and average rating are appended from their
+ * hundredths, so formatting a beer does not create a BigDecimal or any
+ * other temporary object.
+ *
+ * @author Promineo
+ *
+ */
+public enum BeerFormat {
+  /**
+   * One beer per line, in the same form as {@link Beer#toString()}.
+   */
+  TEXT {
+    @Override
+    void append(StringBuilder out, Beer beer) {
+      out.append("Beer(ordinal=").append(beer.getOrdinal());
+      out.append(", name=").append(beer.getName());
+      out.append(", brewery=").append(beer.getBrewery());
+      out.append(", type=").append(beer.getType());
+      out.append(", abv=");
+      appendHundredths(out, beer.getAbvHundredths());
+      out.append(", numRatings=").append(beer.getNumRatings());
+      out.append(", averageRating=");
+      appendHundredths(out, beer.getAverageRatingHundredths());
+      out.append(")\n");
+    }
+  },
+
+  /**
+   * Comma separated values as described by RFC 4180, with a header
+   * line. Fields that hold a comma, a quote or a line break are quoted,
+   * and quotes inside them are doubled. Lines end with CR LF.
+   */
+  CSV {
+    @Override
+    String header() {
+      return "ordinal,name,brewery,type,abv,numRatings,"
+          + "averageRating\r\n";
+    }
+
+    @Override
+    void append(StringBuilder out, Beer beer) {
+      out.append(beer.getOrdinal()).append(',');
+      appendCsv(out, beer.getName());
+      out.append(',');
+      appendCsv(out, beer.getBrewery());
+      out.append(',');
+      appendCsv(out, beer.getType());
+      out.append(',');
+      appendHundredths(out, beer.getAbvHundredths());
+      out.append(',').append(beer.getNumRatings()).append(',');
+      appendHundredths(out, beer.getAverageRatingHundredths());
+      out.append("\r\n");
+    }
+  },
+
+  /**
+   * JSON Lines: one JSON object per line. The ABV and average rating
+   * are JSON numbers with two decimal places.
+   */
+  JSONL {
+    @Override
+    void append(StringBuilder out, Beer beer) {
+      out.append("{\"ordinal\":").append(beer.getOrdinal());
+      out.append(",\"name\":");
+      appendJson(out, beer.getName());
+      out.append(",\"brewery\":");
+      appendJson(out, beer.getBrewery());
+      out.append(",\"type\":");
+      appendJson(out, beer.getType());
+      out.append(",\"abv\":");
+      appendHundredths(out, beer.getAbvHundredths());
+      out.append(",\"numRatings\":").append(beer.getNumRatings());
+      out.append(",\"averageRating\":");
+      appendHundredths(out, beer.getAverageRatingHundredths());
+      out.append("}\n");
+    }
+  };
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * Return the text that comes before the first beer.
+   *
+   * @return The header, or an empty string if the format has none.
+   */
+  String header() {
+    return "";
+  }
+
+  /**
+   * Append one beer, including the line ending.
+   *
+   * @param out The builder to append to.
+   * @param beer The beer.
+   */
+  abstract void append(StringBuilder out, Beer beer);
+
+  /**
+   * Append a value in hundredths as a decimal with two places, so 1250
+   * is appended as 12.50.
+   */
+  static void appendHundredths(StringBuilder out, int hundredths) {
+    if(hundredths < 0) {
+      out.append('-');
+    }
+
+    int abs = Math.abs(hundredths);
+    int fraction = abs % 100;
+
+    out.append(abs / 100).append('.');
+    out.append((char) ('0' + fraction / 10));
+    out.append((char) ('0' + fraction % 10));
+  }
+
+  private static void appendCsv(StringBuilder out, String value) {
+    boolean quote = false;
+
+    for(int index = 0; index < value.length() && !quote; index++) {
+      char ch = value.charAt(index);
+      quote = ch == ',' || ch == '"' || ch == '\r' || ch == '\n';
+    }
+
+    if(!quote) {
+      out.append(value);
+      return;
+    }
+
+    out.append('"');
+
+    for(int index = 0; index < value.length(); index++) {
+      char ch = value.charAt(index);
+
+      if(ch == '"') {
+        out.append('"');
+      }
+
+      out.append(ch);
+    }
+
+    out.append('"');
+  }
+
+  private static void appendJson(StringBuilder out, String value) {
+    out.append('"');
+
+    for(int index = 0; index < value.length(); index++) {
+      char ch = value.charAt(index);
+
+      switch (ch) {
+        case '"':
+          out.append("\\\"");
+          break;
+
+        case '\\':
+          out.append("\\\\");
+          break;
+
+        case '\n':
+          out.append("\\n");
+          break;
+
+        case '\r':
+          out.append("\\r");
+          break;
+
+        case '\t':
+          out.append("\\t");
+          break;
+
+        default:
+          if(ch < 0x20) {
+            out.append("\\u00").append(HEX[ch >> 4])
+                .append(HEX[ch & 15]);
+          }
+          else {
+            out.append(ch);
+          }
+      }
+    }
+
+    out.append('"');
+  }
+}
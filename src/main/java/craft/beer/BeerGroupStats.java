@@ -0,0 +1,72 @@
+package craft.beer;
+
+import java.math.BigDecimal;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * This class holds the statistics for one group of beers, such as all
+ * of the beers from one brewery or of one type. Like {@link Beer}, the
+ * ABV and rating values are held in hundredths and are returned as
+ * BigDecimal values on demand.
+ * 
+ * @author Promineo
+ *
+ */
+@Value
+@Builder
+public class BeerGroupStats {
+  /** The brewery or beer type that the beers have in common. */
+  private String group;
+
+  /** The number of beers in the group. */
+  private int count;
+
+  /** The total number of ratings of the beers in the group. */
+  private long numRatings;
+
+  private int meanAbvHundredths;
+
+  /**
+   * The average rating of the group, with each beer's average rating
+   * weighted by its number of ratings.
+   */
+  private int weightedAverageRatingHundredths;
+
+  private int maxAverageRatingHundredths;
+
+  /**
+   * Return the mean ABV of the beers in the group.
+   * 
+   * @return The mean ABV with two decimal places.
+   */
+  public BigDecimal getMeanAbv() {
+    return BigDecimal.valueOf(meanAbvHundredths, 2);
+  }
+
+  /**
+   * Return the rating-count-weighted average rating of the group.
+   * 
+   * @return The weighted average rating with two decimal places.
+   */
+  public BigDecimal getWeightedAverageRating() {
+    return BigDecimal.valueOf(weightedAverageRatingHundredths, 2);
+  }
+
+  /**
+   * Return the highest average rating of any beer in the group.
+   * 
+   * @return The highest average rating with two decimal places.
+   */
+  public BigDecimal getMaxAverageRating() {
+    return BigDecimal.valueOf(maxAverageRatingHundredths, 2);
+  }
+
+  @Override
+  public String toString() {
+    return "BeerGroupStats(group=" + group + ", count=" + count
+        + ", numRatings=" + numRatings + ", meanAbv=" + getMeanAbv()
+        + ", weightedAverageRating=" + getWeightedAverageRating()
+        + ", maxAverageRating=" + getMaxAverageRating() + ")";
+  }
+}
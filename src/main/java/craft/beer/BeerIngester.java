@@ -0,0 +1,364 @@
+package craft.beer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class loads many beer data files, such as one scrape per region
+ * or per day, into a single table. The files are found from a
+ * directory or a glob pattern and each file is read on its own thread
+ * by a {@link BeerSource}, so each file may be in any of the supported
+ * formats.
+ *
+ * The craft.beer.ingest.threads property sets how many files are read
+ * at once. On Java 21 and later the files are read on virtual threads.
+ * On earlier versions a pool of that many platform threads is used
+ * instead.
+ *
+ * The files are merged in order of their paths. A beer is identified by
+ * its name and brewery, the same key that
+ * {@link BeerCatalog#diff(java.util.stream.Stream)} matches beers by
+ * (see {@link Beer#key()}). If a later file has the same beer, it
+ * replaces the earlier one but keeps its place in the table, even if
+ * the later file gives it another beer type. With file names that sort
+ * by date, the newest scrape of each beer wins.
+ *
+ * @Service This tells Spring to manage the lifecycle of this class as
+ *          a managed bean.
+ *
+ * @author Promineo
+ *
+ */
+@Service
+public class BeerIngester {
+  private static final Logger log =
+      LoggerFactory.getLogger(BeerIngester.class);
+
+  @Autowired
+  private CraftBeerService craftBeerService;
+
+  /**
+   * The directory or glob pattern of the beer data files to ingest. A
+   * blank value means the single craft.beer.data.file is used instead.
+   */
+  @Value("${craft.beer.data.files:}")
+  private String dataFiles;
+
+  /**
+   * The number of files that are read at once, which is also the size
+   * of the thread pool when virtual threads are not available. Zero
+   * means one per available processor.
+   */
+  @Value("${craft.beer.ingest.threads:0}")
+  private int threads;
+
+  /**
+   * Return true if the craft.beer.data.files property is set.
+   *
+   * @return True if {@link #ingest()} can be called.
+   */
+  public boolean isConfigured() {
+    return dataFiles != null && !dataFiles.isBlank();
+  }
+
+  /**
+   * Ingest the files given by the craft.beer.data.files property.
+   *
+   * @return The merged table and a report for each file.
+   */
+  public IngestResult ingest() {
+    if(!isConfigured()) {
+      throw new IllegalStateException(
+          "The craft.beer.data.files property is not set");
+    }
+
+    return ingest(dataFiles);
+  }
+
+  /**
+   * Ingest the files in a directory or matching a glob pattern. See
+   * {@link #findFiles(String)}.
+   *
+   * @param location A directory, a glob pattern or a single file.
+   * @return The merged table and a report for each file.
+   */
+  public IngestResult ingest(String location) {
+    List<Path> files = findFiles(location);
+
+    if(files.isEmpty()) {
+      throw new IllegalArgumentException(
+          "No beer data files found in " + location);
+    }
+
+    return ingest(files);
+  }
+
+  /**
+   * Read each file on its own thread and merge the beers into one
+   * table. Each file is read into a list of beers, not a table, and the
+   * beers are added straight to the merged table. The files are merged
+   * in the order given, each one once it and the files before it have
+   * been read, so the merge overlaps with reading the later files. Only
+   * a window of files, one per thread, is read or waiting to be merged
+   * at any time, so the memory used does not grow with the number of
+   * files.
+   *
+   * @param files The beer data files.
+   * @return The merged table and a report for each file.
+   */
+  public IngestResult ingest(List<Path> files) {
+    long start = System.nanoTime();
+    int window = threads > 0 ? threads
+        : Runtime.getRuntime().availableProcessors();
+    Deque<Future<ParsedFile>> pending = new ArrayDeque<>(window);
+    ExecutorService executor = newExecutor();
+
+    try {
+      BeerTable.Builder merged = craftBeerService.newTableBuilder();
+      Map<String, Integer> rowsByKey = new HashMap<>();
+      List<IngestedFile> reports = new ArrayList<>(files.size());
+      int duplicates = 0;
+      int next = 0;
+
+      for(int file = 0; file < files.size(); file++) {
+        while (next < files.size() && next < file + window) {
+          Path path = files.get(next++);
+
+          pending.add(executor.submit(() -> read(path)));
+        }
+
+        ParsedFile parsed = await(pending.remove());
+
+        for(Beer beer : parsed.beers) {
+          Integer existing =
+              rowsByKey.putIfAbsent(beer.key(), merged.size());
+
+          if(existing == null) {
+            merged.add(beer);
+          }
+          else {
+            merged.set(existing, beer);
+            duplicates++;
+          }
+        }
+
+        IngestedFile report = new IngestedFile(files.get(file),
+            parsed.beers.size(), parsed.millis);
+
+        log.info("Parsed {}", report);
+        reports.add(report);
+      }
+
+      IngestResult result = new IngestResult(merged.build(), reports,
+          duplicates, elapsedMillis(start));
+
+      log.info("Ingested {} beers from {} files in {} ms"
+          + " ({} duplicates)", result.getTable().size(), files.size(),
+          result.getMillis(), duplicates);
+
+      return result;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Find the beer data files at a location, sorted by path. The
+   * location may be:
+   *
+   * <ul>
+   * <li>A directory. Every file in it is used. Subdirectories are not
+   * searched.</li>
+   * <li>A glob pattern such as data/*.txt or data/**.csv (see
+   * {@link FileSystems#getPathMatcher(String)}). The search starts in
+   * the directory before the first wildcard.</li>
+   * <li>A single file.</li>
+   * </ul>
+   *
+   * Hidden files, whose names start with '.', are skipped in a
+   * directory or glob search.
+   *
+   * @param location The directory, glob pattern or file.
+   * @return The files, which may be empty.
+   */
+  public static List<Path> findFiles(String location) {
+    int wildcard = indexOfWildcard(location);
+
+    try {
+      if(wildcard == -1) {
+        Path path = Paths.get(location);
+
+        if(!Files.isDirectory(path)) {
+          return List.of(path);
+        }
+
+        try (Stream<Path> paths = Files.list(path)) {
+          return paths.filter(BeerIngester::isDataFile).sorted()
+              .collect(Collectors.toList());
+        }
+      }
+
+      int slash = Math.max(location.lastIndexOf('/', wildcard),
+          location.lastIndexOf(File.separatorChar, wildcard));
+      Path base = Paths.get(location.substring(0, slash + 1));
+      PathMatcher matcher =
+          FileSystems.getDefault().getPathMatcher("glob:" + location);
+      int depth = location.contains("**") ? Integer.MAX_VALUE
+          : depth(location.substring(slash + 1));
+
+      try (Stream<Path> paths = Files.walk(base, depth)) {
+        return paths.filter(matcher::matches)
+            .filter(BeerIngester::isDataFile).sorted()
+            .collect(Collectors.toList());
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Return true if the path is a regular file that is not hidden.
+   */
+  private static boolean isDataFile(Path path) {
+    return Files.isRegularFile(path)
+        && !path.getFileName().toString().startsWith(".");
+  }
+
+  private static int indexOfWildcard(String location) {
+    for(int index = 0; index < location.length(); index++) {
+      if("*?[{".indexOf(location.charAt(index)) != -1) {
+        return index;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Return the number of path names in the part of a glob pattern after
+   * the base directory.
+   */
+  private static int depth(String pattern) {
+    int depth = 1;
+
+    for(int index = 0; index < pattern.length(); index++) {
+      char ch = pattern.charAt(index);
+
+      if(ch == '/' || ch == File.separatorChar) {
+        depth++;
+      }
+    }
+
+    return depth;
+  }
+
+  /**
+   * Create an executor that runs each task on a new virtual thread. The
+   * factory method is looked up by reflection so that this class still
+   * compiles for and runs on Java 17, where a fixed pool of platform
+   * threads is used instead.
+   */
+  private ExecutorService newExecutor() {
+    try {
+      return (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      int size = threads > 0 ? threads
+          : Runtime.getRuntime().availableProcessors();
+
+      return Executors.newFixedThreadPool(size);
+    }
+  }
+
+  /**
+   * Read the beers in a file, in any of the supported formats. In
+   * lenient mode, bad records are skipped and logged.
+   */
+  private ParsedFile read(Path path) {
+    long start = System.nanoTime();
+    List<Beer> beers = new ArrayList<>();
+    ParseDiagnostics diagnostics = craftBeerService.newDiagnostics();
+
+    try {
+      craftBeerService.openBeerSource(path).read(beers::add,
+          diagnostics);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    craftBeerService.logDiagnostics(path, diagnostics);
+
+    return new ParsedFile(beers, elapsedMillis(start));
+  }
+
+  /**
+   * Wait for a file to be read, rethrowing anything the read threw.
+   */
+  private ParsedFile await(Future<ParsedFile> file) {
+    try {
+      return file.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during ingest", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+
+      if(cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+
+      if(cause instanceof Error) {
+        throw (Error) cause;
+      }
+
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private long elapsedMillis(long startNanos) {
+    return (System.nanoTime() - startNanos) / 1_000_000;
+  }
+
+  /**
+   * The beers read from one file and how long the read took. It is
+   * handed from the reading thread to the merging one by its Future.
+   */
+  private static class ParsedFile {
+    private final List<Beer> beers;
+    private final long millis;
+
+    ParsedFile(List<Beer> beers, long millis) {
+      this.beers = beers;
+      this.millis = millis;
+    }
+  }
+}
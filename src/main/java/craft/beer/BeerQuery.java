@@ -0,0 +1,87 @@
+package craft.beer;
+
+import java.math.BigDecimal;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * This class describes a range query over the beer catalog. Each range
+ * is inclusive and any range that is not set matches every beer. The
+ * ABV and average rating ranges are in hundredths, like {@link Beer},
+ * but the builder also accepts BigDecimal values. For example, to find
+ * beers from 8% to 12% ABV with a rating of at least 4.5:
+ * 
+ * <pre>
+ BeerQuery query = BeerQuery.builder()
+     .minAbv(new BigDecimal("8"))
+     .maxAbv(new BigDecimal("12"))
+     .minAverageRating(new BigDecimal("4.5"))
+     .build();
+ * </pre>
+ * 
+ * @author Promineo
+ *
+ */
+@Value
+@Builder
+public class BeerQuery {
+  @Builder.Default
+  private int minAbvHundredths = 0;
+
+  @Builder.Default
+  private int maxAbvHundredths = Integer.MAX_VALUE;
+
+  @Builder.Default
+  private int minAverageRatingHundredths = 0;
+
+  @Builder.Default
+  private int maxAverageRatingHundredths = Integer.MAX_VALUE;
+
+  @Builder.Default
+  private int minNumRatings = 0;
+
+  @Builder.Default
+  private int maxNumRatings = Integer.MAX_VALUE;
+
+  /**
+   * Return true if a beer with the given values matches every range of
+   * this query.
+   * 
+   * @param abv The ABV in hundredths.
+   * @param averageRating The average rating in hundredths.
+   * @param numRatings The number of ratings.
+   * @return true if the beer matches.
+   */
+  public boolean matches(int abv, int averageRating, int numRatings) {
+    // @formatter:off
+    return abv >= minAbvHundredths
+        && abv <= maxAbvHundredths
+        && averageRating >= minAverageRatingHundredths
+        && averageRating <= maxAverageRatingHundredths
+        && numRatings >= minNumRatings
+        && numRatings <= maxNumRatings;
+    // @formatter:on
+  }
+
+  /**
+   * Lombok fills in the rest of this builder. The methods here let the
+   * ABV and average rating ranges be set from BigDecimal values.
+   */
+  public static class BeerQueryBuilder {
+    public BeerQueryBuilder minAbv(BigDecimal minAbv) {
+      return minAbvHundredths(Beer.toHundredths(minAbv));
+    }
+
+    public BeerQueryBuilder maxAbv(BigDecimal maxAbv) {
+      return maxAbvHundredths(Beer.toHundredths(maxAbv));
+    }
+
+    public BeerQueryBuilder minAverageRating(BigDecimal minRating) {
+      return minAverageRatingHundredths(Beer.toHundredths(minRating));
+    }
+
+    public BeerQueryBuilder maxAverageRating(BigDecimal maxRating) {
+      return maxAverageRatingHundredths(Beer.toHundredths(maxRating));
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package craft.beer;
+
+import java.nio.file.Path;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+/**
+ * This class gives the rest of the application indexed access to the
+ * craft beer data. The beer data is loaded and indexed the first time
+ * it is needed and again each time {@link #reload()} or
+ * {@link #update()} is called.
+ * 
+ * A catalog is never changed once it is built. A reload builds a
+ * complete new catalog and then replaces the old one with a single
+ * volatile write, so queries never wait for a reload and a query that
+ * is running during a reload keeps using the old catalog.
+ * 
+ * @Repository This tells Spring to manage this class as a data access
+ *             bean, which makes it eligible for Dependency Injection.
+ * 
+ * @author Promineo
+ *
+ */
+@Repository
+public class BeerRepository {
+
+  @Autowired
+  private CraftBeerService craftBeerService;
+
+  @Autowired
+  private BeerIngester beerIngester;
+
+  private volatile BeerCatalog catalog;
+
+  /**
+   * Return the current catalog, loading it if this is the first call.
+   * 
+   * @return The catalog.
+   */
+  public BeerCatalog getCatalog() {
+    BeerCatalog current = catalog;
+
+    if(current == null) {
+      synchronized (this) {
+        current = catalog;
+
+        if(current == null) {
+          current = load();
+        }
+      }
+    }
+
+    return current;
+  }
+
+  /**
+   * Load the beer data again and rebuild the indexes. The current
+   * catalog is kept if the beer data cannot be loaded.
+   * 
+   * @return The new catalog.
+   */
+  public synchronized BeerCatalog reload() {
+    return load();
+  }
+
+  /**
+   * Read the beer data again and compare it with the current catalog.
+   * The differences, such as new ratings and added or removed beers,
+   * are applied to the current catalog, which is much faster than
+   * building a new one when only a few beers changed. The current
+   * catalog is kept if the beer data cannot be read. In lenient mode,
+   * bad records are skipped and logged, as they are when the catalog
+   * is loaded.
+   * 
+   * Beer data ingested from many files (see {@link BeerIngester}) is
+   * always reloaded.
+   * 
+   * @return The new catalog, or the current one if nothing changed.
+   */
+  public synchronized BeerCatalog update() {
+    if(beerIngester.isConfigured()) {
+      return load();
+    }
+
+    BeerCatalog current = getCatalog();
+    Path path = craftBeerService.getBeerFilePath();
+    ParseDiagnostics diagnostics = craftBeerService.newDiagnostics();
+    BeerSource source = craftBeerService.openBeerSource(path);
+    BeerDiff diff = current.diff(source, diagnostics);
+
+    craftBeerService.logDiagnostics(path, diagnostics);
+
+    BeerCatalog updated = current.apply(diff);
+
+    catalog = updated;
+
+    return updated;
+  }
+
+  /**
+   * Find all beers from the given brewery.
+   * 
+   * @param brewery The brewery name. This must match exactly.
+   * @return The beers in catalog order.
+   */
+  public List<Beer> findByBrewery(String brewery) {
+    return getCatalog().findByBrewery(brewery);
+  }
+
+  /**
+   * Find all beers of the given type.
+   * 
+   * @param type The beer type. This must match exactly.
+   * @return The beers in catalog order.
+   */
+  public List<Beer> findByType(String type) {
+    return getCatalog().findByType(type);
+  }
+
+  /**
+   * Find all beers that match the ranges of the query.
+   * 
+   * @param query The query.
+   * @return The beers in catalog order.
+   */
+  public List<Beer> find(BeerQuery query) {
+    return getCatalog().find(query);
+  }
+
+  /**
+   * Search the beer names for the words of the query. The last word
+   * matches as a prefix.
+   * 
+   * @param query The words to find.
+   * @param n The number of beers to return.
+   * @return Up to n beers, highest average rating first.
+   */
+  public List<Beer> searchByName(String query, int n) {
+    return getCatalog().searchByName(query, n);
+  }
+
+  /**
+   * Find the beers whose names are close to a possibly misspelled
+   * name.
+   * 
+   * @param name The name to look for.
+   * @param maxDistance The most single character edits allowed.
+   * @param n The number of beers to return.
+   * @return Up to n beers, closest first.
+   */
+  public List<Beer> fuzzyFindByName(String name, int maxDistance,
+      int n) {
+    return getCatalog().fuzzyFindByName(name, maxDistance, n);
+  }
+
+  /**
+   * Find the breweries whose names are close to a possibly misspelled
+   * brewery name.
+   * 
+   * @param brewery The brewery name to look for.
+   * @param maxDistance The most single character edits allowed.
+   * @param n The number of breweries to return.
+   * @return Up to n brewery names, closest first.
+   */
+  public List<String> fuzzyFindBreweries(String brewery,
+      int maxDistance, int n) {
+    return getCatalog().fuzzyFindBreweries(brewery, maxDistance, n);
+  }
+
+  /**
+   * Find the n beers with the highest Bayesian score, which ranks beers
+   * with many ratings above beers with a similar average rating but
+   * few ratings.
+   * 
+   * @param n The number of beers to return.
+   * @return Up to n beers, best first.
+   */
+  public List<Beer> topByScore(int n) {
+    return getCatalog().topByScore(n);
+  }
+
+  /**
+   * Find the n beers of the given type with the highest average
+   * rating.
+   * 
+   * @param n The number of beers to return.
+   * @param type The beer type. This must match exactly.
+   * @return Up to n beers, best first.
+   */
+  public List<Beer> topRatedOfType(int n, String type) {
+    return getCatalog().topRatedOfType(n, type);
+  }
+
+  /**
+   * Find the n beers from the given brewery with the most ratings.
+   * 
+   * @param n The number of beers to return.
+   * @param brewery The brewery name. This must match exactly.
+   * @return Up to n beers, best first.
+   */
+  public List<Beer> mostRatedFromBrewery(int n, String brewery) {
+    return getCatalog().mostRatedFromBrewery(n, brewery);
+  }
+
+  /**
+   * Calculate statistics for each brewery or beer type.
+   * 
+   * @param grouping The column to group by.
+   * @return The statistics for each group.
+   */
+  public List<BeerGroupStats> aggregate(BeerCatalog.Grouping grouping) {
+    return getCatalog().aggregate(grouping);
+  }
+
+  private BeerCatalog load() {
+    BeerTable table = beerIngester.isConfigured()
+        ? beerIngester.ingest().getTable()
+        : craftBeerService.loadBeerTable();
+    BeerCatalog loaded = new BeerCatalog(table);
+
+    catalog = loaded;
+
+    return loaded;
+  }
+}
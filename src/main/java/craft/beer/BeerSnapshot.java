@@ -0,0 +1,315 @@
+package craft.beer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32C;
+
+/**
+ * This class writes a {@link BeerTable} to a compact binary snapshot
+ * file and reads it back. Loading a snapshot is much faster than
+ * parsing the beer data file because the numeric columns are copied
+ * straight out of a memory-mapped buffer. A snapshot records the
+ * checksum of the beer data file it was made from and whether bad
+ * records were skipped by a lenient parse, so a stale snapshot, or one
+ * made in the other parse mode, is never loaded. The version is changed
+ * whenever the layout changes, so a snapshot written by an older
+ * version is ignored too. A snapshot is only a cache, so a truncated or
+ * corrupt one is detected as it is read rather than trusted.
+ *
+ * The snapshot file looks like this. All numbers are big-endian.
+ *
+ * <pre>
+ header:   magic (int) version (int) checksum (long) lenient (int)
+           rows (int) breweries (int) types (int)
+ columns:  ordinal, brewery code, type code, ABV, number of ratings
+           and average rating, each as (rows) ints
+ strings:  brewery dictionary, type dictionary and beer names, each
+           String as a length (int) followed by UTF-8 bytes
+ * </pre>
+ *
+ * @author Promineo
+ *
+ */
+class BeerSnapshot {
+  private static final int MAGIC = 0x42454552; // "BEER"
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 32;
+  private static final int NUM_COLUMNS = 6;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private BeerSnapshot() {
+  }
+
+  /**
+   * Calculate the checksum of a beer data file.
+   *
+   * @param path The path to the beer data file.
+   * @return The checksum.
+   * @throws IOException Thrown if the file cannot be read.
+   */
+  static long checksum(Path path) throws IOException {
+    CRC32C crc = new CRC32C();
+
+    try (FileChannel channel = FileChannel.open(path)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        crc.update(buffer);
+        buffer.clear();
+      }
+    }
+
+    return crc.getValue();
+  }
+
+  /**
+   * Write the table to a snapshot file. The snapshot is written to a
+   * temporary file first and then moved into place, so a reader never
+   * sees a partly written snapshot.
+   *
+   * @param table The table to write.
+   * @param checksum The checksum of the beer data file that the table
+   *        was parsed from.
+   * @param lenient True if the table was parsed in lenient mode.
+   * @param path The path to the snapshot file.
+   * @throws IOException Thrown if the snapshot cannot be written.
+   */
+  static void write(BeerTable table, long checksum, boolean lenient,
+      Path path) throws IOException {
+    Path dir = path.toAbsolutePath().getParent();
+
+    Files.createDirectories(dir);
+
+    Path temp = Files.createTempFile(dir, "beer", ".tmp");
+
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(temp),
+              BUFFER_SIZE))) {
+        String[] breweries = table.breweryDictionary();
+        String[] types = table.typeDictionary();
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(checksum);
+        out.writeInt(lenient ? 1 : 0);
+        out.writeInt(table.size());
+        out.writeInt(breweries.length);
+        out.writeInt(types.length);
+
+        /* read() expects the columns in this order. */
+        writeColumn(out, table.ordinalColumn());
+        writeColumn(out, table.breweryCodeColumn());
+        writeColumn(out, table.typeCodeColumn());
+        writeColumn(out, table.abvColumn());
+        writeColumn(out, table.numRatingsColumn());
+        writeColumn(out, table.averageRatingColumn());
+
+        writeStrings(out, breweries, breweries.length);
+        writeStrings(out, types, types.length);
+        writeStrings(out, table.nameColumn(), table.size());
+      }
+
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Read a table from a snapshot file. The breweries and beer types in
+   * the snapshot are interned in the given symbol tables, and the codes
+   * in the returned table are the codes from those symbol tables.
+   * Scores are not stored in the snapshot. They are calculated as the
+   * table is created, so a change to the prior does not make the
+   * snapshot stale.
+   *
+   * @param path The path to the snapshot file.
+   * @param checksum The checksum of the current beer data file.
+   * @param lenient True if the beer data file is parsed in lenient
+   *        mode.
+   * @param breweryTable Interns the breweries.
+   * @param typeTable Interns the beer types.
+   * @param prior The prior used to score each row.
+   * @return The table, or null if there is no snapshot file or the
+   *         snapshot was not made from the current beer data file in
+   *         the same parse mode by this version, or is too short for
+   *         the number of rows in its header.
+   * @throws IOException Thrown if the snapshot cannot be read or is
+   *         corrupt, such as a string that runs past the end of the
+   *         file or a code that is not in its dictionary.
+   */
+  static BeerTable read(Path path, long checksum, boolean lenient,
+      SymbolTable breweryTable, SymbolTable typeTable,
+      BayesianPrior prior) throws IOException {
+    if(!Files.isRegularFile(path)) {
+      return null;
+    }
+
+    try (FileChannel channel = FileChannel.open(path)) {
+      if(channel.size() < HEADER_SIZE) {
+        return null;
+      }
+
+      ByteBuffer header =
+          channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+      if(header.getInt() != MAGIC || header.getInt() != VERSION
+          || header.getLong() != checksum
+          || header.getInt() != (lenient ? 1 : 0)) {
+        return null;
+      }
+
+      int rows = header.getInt();
+      int numBreweries = header.getInt();
+      int numTypes = header.getInt();
+      long size = channel.size();
+
+      if(rows < 0 || numBreweries < 0 || numTypes < 0
+          || HEADER_SIZE + 4L * rows * NUM_COLUMNS > size) {
+        return null;
+      }
+
+      /*
+       * Columns: 0 ordinal, 1 brewery code, 2 type code, 3 ABV, 4 number
+       * of ratings, 5 average rating.
+       */
+      int[][] columns = new int[NUM_COLUMNS][];
+
+      for(int column = 0; column < NUM_COLUMNS; column++) {
+        columns[column] = readColumn(channel,
+            HEADER_SIZE + 4L * rows * column, rows);
+      }
+
+      channel.position(HEADER_SIZE + 4L * rows * NUM_COLUMNS);
+
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+          Channels.newInputStream(channel), BUFFER_SIZE));
+
+      String[] breweries = readStrings(in, numBreweries, size, null);
+      String[] types = readStrings(in, numTypes, size, null);
+      TextIndex.Builder nameIndex = TextIndex.builder();
+      String[] names = readStrings(in, rows, size, nameIndex);
+
+      checkCodes(columns[1], numBreweries);
+      checkCodes(columns[2], numTypes);
+
+      recode(columns[1], breweries, breweryTable);
+      recode(columns[2], types, typeTable);
+
+      return new BeerTable(columns[0], names, columns[1], columns[2],
+          columns[3], columns[4], columns[5], breweryTable, typeTable,
+          nameIndex.build(), prior);
+    }
+  }
+
+  private static void writeColumn(DataOutputStream out, int[] column)
+      throws IOException {
+    for(int value : column) {
+      out.writeInt(value);
+    }
+  }
+
+  private static void writeStrings(DataOutputStream out,
+      String[] values, int count) throws IOException {
+    for(int index = 0; index < count; index++) {
+      byte[] bytes = values[index].getBytes(StandardCharsets.UTF_8);
+
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Copy a column out of a memory-mapped region of the snapshot.
+   */
+  private static int[] readColumn(FileChannel channel, long offset,
+      int rows) throws IOException {
+    int[] column = new int[rows];
+
+    channel.map(MapMode.READ_ONLY, offset, 4L * rows).asIntBuffer()
+        .get(column);
+
+    return column;
+  }
+
+  /**
+   * Read strings, adding each one to the text index as it is read if
+   * an index is given. A length that is negative or longer than the
+   * file is corrupt.
+   */
+  private static String[] readStrings(DataInputStream in, int count,
+      long fileSize, TextIndex.Builder index) throws IOException {
+    String[] values = new String[count];
+    byte[] bytes = new byte[256];
+
+    for(int row = 0; row < count; row++) {
+      int len = in.readInt();
+
+      if(len < 0 || len > fileSize) {
+        throw new IOException("Corrupt string length " + len);
+      }
+
+      if(bytes.length < len) {
+        bytes = new byte[Math.max(len, bytes.length * 2)];
+      }
+
+      in.readFully(bytes, 0, len);
+      values[row] = new String(bytes, 0, len, StandardCharsets.UTF_8);
+
+      if(index != null) {
+        index.add(row, values[row]);
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * Check that every code in a column is a code of its dictionary.
+   */
+  private static void checkCodes(int[] column, int numCodes)
+      throws IOException {
+    for(int row = 0; row < column.length; row++) {
+      if(column[row] < 0 || column[row] >= numCodes) {
+        throw new IOException("Corrupt code " + column[row] + " in row "
+            + row + " of " + numCodes + " codes");
+      }
+    }
+  }
+
+  /**
+   * Replace the snapshot codes in a column with the codes of the same
+   * values in the symbol table.
+   */
+  private static void recode(int[] column, String[] dictionary,
+      SymbolTable symbols) {
+    int[] codes = new int[dictionary.length];
+    boolean same = true;
+
+    for(int code = 0; code < dictionary.length; code++) {
+      codes[code] = symbols.encode(dictionary[code]);
+      same &= codes[code] == code;
+    }
+
+    if(!same) {
+      for(int row = 0; row < column.length; row++) {
+        column[row] = codes[column[row]];
+      }
+    }
+  }
+}
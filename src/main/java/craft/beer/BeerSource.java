@@ -0,0 +1,161 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * A source of beer data in one of the supported file formats. Each
+ * format has its own reader that decodes the raw bytes, but every
+ * reader produces the same Beer objects with interned breweries and
+ * beer types, so the table, snapshot and indexes are built the same way
+ * whatever format the data arrived in.
+ *
+ * A source is created over a file with {@link #open(Path, SymbolTable,
+ * SymbolTable)}, which detects the format from the first bytes of the
+ * file. The file is opened and closed by each call to
+ * {@link #read(Consumer)}.
+ *
+ * @author Promineo
+ *
+ */
+public interface BeerSource {
+  /**
+   * The file formats that beer data can be read from.
+   */
+  enum Format {
+    /**
+     * The 3-line format scraped from the web site. See
+     * {@link CraftBeerService#streamBeerFile(Path)}.
+     */
+    TEXT,
+
+    /**
+     * Comma separated values as described by RFC 4180. The columns are
+     * ordinal, name, brewery, type, abv, numRatings and averageRating,
+     * in that order or in the order given by a header line.
+     */
+    CSV,
+
+    /**
+     * JSON Lines: one JSON object per line with the same fields as the
+     * CSV columns.
+     */
+    JSONL
+  }
+
+  /**
+   * Read every beer in the file. An exception is thrown at the first
+   * record that cannot be read.
+   *
+   * @param consumer Receives each Beer in file order.
+   * @throws IOException Thrown if the file cannot be read.
+   */
+  default void read(Consumer<? super Beer> consumer)
+      throws IOException {
+    read(consumer, null);
+  }
+
+  /**
+   * Read every beer in the file. If diagnostics are given, reading is
+   * lenient: each record that cannot be read is added to the
+   * diagnostics and skipped, and reading carries on with the next
+   * record. The records that can be read are parsed exactly as in
+   * strict mode.
+   *
+   * @param consumer Receives each Beer in file order.
+   * @param diagnostics Collects the bad records, or null to throw an
+   *        exception at the first one.
+   * @throws IOException Thrown if the file cannot be read.
+   */
+  void read(Consumer<? super Beer> consumer,
+      ParseDiagnostics diagnostics) throws IOException;
+
+  /**
+   * Create a source for a file, detecting its format. See
+   * {@link #detect(Path)}.
+   *
+   * @param path The beer data file.
+   * @param breweries Interns the brewery of each Beer.
+   * @param types Interns the beer type of each Beer.
+   * @return The source.
+   * @throws IOException Thrown if the start of the file cannot be read.
+   */
+  static BeerSource open(Path path, SymbolTable breweries,
+      SymbolTable types) throws IOException {
+    return of(path, detect(path), breweries, types);
+  }
+
+  /**
+   * Create a source for a file in the given format.
+   *
+   * @param path The beer data file.
+   * @param format The format of the file.
+   * @param breweries Interns the brewery of each Beer.
+   * @param types Interns the beer type of each Beer.
+   * @return The source.
+   */
+  static BeerSource of(Path path, Format format, SymbolTable breweries,
+      SymbolTable types) {
+    switch (format) {
+      case TEXT:
+        return new TextBeerSource(path, breweries, types);
+
+      case CSV:
+        return new CsvBeerSource(path, breweries, types);
+
+      case JSONL:
+        return new JsonLinesBeerSource(path, breweries, types);
+
+      default:
+        throw new IllegalArgumentException("Unknown format " + format);
+    }
+  }
+
+  /**
+   * Detect the format of a file from its first bytes. After any byte
+   * order mark and leading whitespace, a JSON Lines file starts with
+   * '{' and a 3-line file starts with an ordinal followed by a space.
+   * Anything else, such as a header line or an ordinal followed by a
+   * comma, is read as CSV.
+   *
+   * @param path The beer data file.
+   * @return The format.
+   * @throws IOException Thrown if the file cannot be read.
+   */
+  static Format detect(Path path) throws IOException {
+    byte[] head;
+
+    try (InputStream in = Files.newInputStream(path)) {
+      head = in.readNBytes(256);
+    }
+
+    int pos = ByteBeerSource.skipByteOrderMark(head, head.length);
+
+    while (pos < head.length && head[pos] >= 0 && head[pos] <= ' ') {
+      pos++;
+    }
+
+    if(pos == head.length) {
+      return Format.TEXT;
+    }
+
+    if(head[pos] == '{') {
+      return Format.JSONL;
+    }
+
+    int start = pos;
+
+    while (pos < head.length && head[pos] >= '0' && head[pos] <= '9') {
+      pos++;
+    }
+
+    if(pos > start && pos < head.length && head[pos] == ' ') {
+      return Format.TEXT;
+    }
+
+    return Format.CSV;
+  }
+}
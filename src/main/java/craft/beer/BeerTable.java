@@ -0,0 +1,915 @@
+package craft.beer;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class holds beer data in columns instead of as a list of Beer
+ * objects. Each numeric field is held in its own int array, indexed by
+ * row number, and the ABV and average rating are held in hundredths
+ * just like {@link Beer}. The brewery and beer type are held as small
+ * int codes from a {@link SymbolTable} of distinct values. This layout
+ * keeps the values that are scanned together next to each other in
+ * memory, so scans like averages and histograms run over plain int
+ * arrays.
+ *
+ * Each row also has a Bayesian score (see {@link BayesianPrior}), which
+ * is calculated as the row is added, and the table holds the rows in
+ * score order, so the best scoring beers can be read off without a
+ * sort.
+ *
+ * A BeerTable is immutable. Use a {@link Builder} to create one. Rows
+ * can still be read as Beer objects, which are created on demand by
+ * {@link #getBeer(int)} and {@link #asList()}.
+ *
+ * A {@link BeerCatalog} that applies a diff creates a new table that
+ * shares or copies the columns of the old one, with the added beers as
+ * new rows at the end and the removed beers left in place but taken
+ * out of the score order. Such a table never leaves the catalog, which
+ * has its own {@link BeerCatalog#asList()} and statistics that leave
+ * the removed rows out.
+ *
+ * @author Promineo
+ *
+ */
+public class BeerTable {
+  private final int size;
+  private final int[] ordinals;
+  private final String[] names;
+  private final int[] breweryCodes;
+  private final int[] typeCodes;
+  private final int[] abvHundredths;
+  private final int[] numRatings;
+  private final int[] averageRatingHundredths;
+  private final String[] breweries;
+  private final String[] types;
+  private final SymbolTable brewerySymbols;
+  private final SymbolTable typeSymbols;
+  private final TextIndex nameIndex;
+
+  /*
+   * The name index covers the rows before indexedRows. The rows added
+   * after it by withChanges are in the smaller appended name index,
+   * which is null if there are none.
+   */
+  private final int indexedRows;
+  private final TextIndex appendedNameIndex;
+  private final BayesianPrior prior;
+  private final int[] scores;
+
+  /* The rows in order of score, highest first, without removed rows. */
+  private final int[] scoreOrder;
+
+  private BeerTable(Builder builder) {
+    size = builder.size;
+    ordinals = Arrays.copyOf(builder.ordinals, size);
+    names = Arrays.copyOf(builder.names, size);
+    breweryCodes = Arrays.copyOf(builder.breweryCodes, size);
+    typeCodes = Arrays.copyOf(builder.typeCodes, size);
+    abvHundredths = Arrays.copyOf(builder.abvHundredths, size);
+    numRatings = Arrays.copyOf(builder.numRatings, size);
+    averageRatingHundredths =
+        Arrays.copyOf(builder.averageRatingHundredths, size);
+    breweries = builder.breweries.toArray();
+    types = builder.types.toArray();
+    brewerySymbols = builder.breweries;
+    typeSymbols = builder.types;
+    nameIndex = builder.nameIndex.build();
+    indexedRows = size;
+    appendedNameIndex = null;
+    prior = builder.prior;
+    scores = Arrays.copyOf(builder.scores, size);
+    scoreOrder = sortByScore(scores);
+  }
+
+  /**
+   * Create a table from existing columns. The arrays are used as they
+   * are, not copied, so the caller must not change them afterward.
+   * All of the row columns must be the same length, and the name index
+   * must index the names, and the codes must be codes of the symbol
+   * tables. The scores are calculated with the given prior.
+   */
+  BeerTable(int[] ordinals, String[] names, int[] breweryCodes,
+      int[] typeCodes, int[] abvHundredths, int[] numRatings,
+      int[] averageRatingHundredths, SymbolTable breweries,
+      SymbolTable types, TextIndex nameIndex, BayesianPrior prior) {
+    this.size = ordinals.length;
+    this.ordinals = ordinals;
+    this.names = names;
+    this.breweryCodes = breweryCodes;
+    this.typeCodes = typeCodes;
+    this.abvHundredths = abvHundredths;
+    this.numRatings = numRatings;
+    this.averageRatingHundredths = averageRatingHundredths;
+    this.breweries = breweries.toArray();
+    this.types = types.toArray();
+    this.brewerySymbols = breweries;
+    this.typeSymbols = types;
+    this.nameIndex = nameIndex;
+    this.indexedRows = size;
+    this.appendedNameIndex = null;
+    this.prior = prior;
+    this.scores = new int[size];
+
+    for(int row = 0; row < size; row++) {
+      scores[row] =
+          prior.score(averageRatingHundredths[row], numRatings[row]);
+    }
+
+    this.scoreOrder = sortByScore(scores);
+  }
+
+  /**
+   * Create a table from the columns of another table after a change.
+   * The dictionaries, name indexes and prior come from the other table
+   * except for the ones given here.
+   */
+  private BeerTable(BeerTable base, int[] ordinals, String[] names,
+      int[] breweryCodes, int[] typeCodes, int[] abvHundredths,
+      int[] numRatings, int[] averageRatingHundredths, int[] scores,
+      int[] scoreOrder, String[] breweries, String[] types,
+      TextIndex appendedNameIndex) {
+    this.size = ordinals.length;
+    this.ordinals = ordinals;
+    this.names = names;
+    this.breweryCodes = breweryCodes;
+    this.typeCodes = typeCodes;
+    this.abvHundredths = abvHundredths;
+    this.numRatings = numRatings;
+    this.averageRatingHundredths = averageRatingHundredths;
+    this.breweries = breweries;
+    this.types = types;
+    this.brewerySymbols = base.brewerySymbols;
+    this.typeSymbols = base.typeSymbols;
+    this.nameIndex = base.nameIndex;
+    this.indexedRows = base.indexedRows;
+    this.appendedNameIndex = appendedNameIndex;
+    this.prior = base.prior;
+    this.scores = scores;
+    this.scoreOrder = scoreOrder;
+  }
+
+  /**
+   * Create a new, empty builder.
+   *
+   * @return The builder.
+   */
+  public static Builder builder() {
+    return new Builder(new SymbolTable(), new SymbolTable());
+  }
+
+  /**
+   * Create a new, empty builder that encodes breweries and beer types
+   * with the given symbol tables. Tables built with the same symbol
+   * tables use the same codes.
+   *
+   * @param breweries The brewery symbol table.
+   * @param types The beer type symbol table.
+   * @return The builder.
+   */
+  public static Builder builder(SymbolTable breweries,
+      SymbolTable types) {
+    return new Builder(breweries, types);
+  }
+
+  /**
+   * Create a table that holds the given Beers in iteration order.
+   *
+   * @param beers The Beers.
+   * @return The table.
+   */
+  public static BeerTable of(Collection<Beer> beers) {
+    Builder builder =
+        new Builder(new SymbolTable(), new SymbolTable());
+
+    builder.allocate(Math.max(beers.size(), 1));
+
+    for(Beer beer : beers) {
+      builder.add(beer);
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Return the number of rows in the table.
+   *
+   * @return The number of rows.
+   */
+  public int size() {
+    return size;
+  }
+
+  public int getOrdinal(int row) {
+    return ordinals[checkRow(row)];
+  }
+
+  public String getName(int row) {
+    return names[checkRow(row)];
+  }
+
+  public String getBrewery(int row) {
+    return breweries[breweryCodes[checkRow(row)]];
+  }
+
+  public int getBreweryCode(int row) {
+    return breweryCodes[checkRow(row)];
+  }
+
+  public String getType(int row) {
+    return types[typeCodes[checkRow(row)]];
+  }
+
+  public int getTypeCode(int row) {
+    return typeCodes[checkRow(row)];
+  }
+
+  public int getAbvHundredths(int row) {
+    return abvHundredths[checkRow(row)];
+  }
+
+  public int getNumRatings(int row) {
+    return numRatings[checkRow(row)];
+  }
+
+  public int getAverageRatingHundredths(int row) {
+    return averageRatingHundredths[checkRow(row)];
+  }
+
+  /**
+   * Return the Bayesian score of a row.
+   *
+   * @param row The row number.
+   * @return The score in ten-thousandths.
+   */
+  public int getScoreTenThousandths(int row) {
+    return scores[checkRow(row)];
+  }
+
+  /**
+   * Return the Bayesian score of a row.
+   *
+   * @param row The row number.
+   * @return The score with four decimal places.
+   */
+  public BigDecimal getScore(int row) {
+    return BigDecimal.valueOf(scores[checkRow(row)], 4);
+  }
+
+  /**
+   * Return the distinct breweries. A brewery code is an index into this
+   * array.
+   *
+   * @return A copy of the brewery dictionary.
+   */
+  public String[] getBreweries() {
+    return breweries.clone();
+  }
+
+  /**
+   * Return the distinct beer types. A type code is an index into this
+   * array.
+   *
+   * @return A copy of the beer type dictionary.
+   */
+  public String[] getTypes() {
+    return types.clone();
+  }
+
+  /**
+   * Create a Beer object from a row.
+   *
+   * @param row The row number.
+   * @return A new Beer holding the row's values.
+   */
+  public Beer getBeer(int row) {
+    checkRow(row);
+
+    // @formatter:off
+    return Beer.builder()
+        .abvHundredths(abvHundredths[row])
+        .averageRatingHundredths(averageRatingHundredths[row])
+        .brewery(breweries[breweryCodes[row]])
+        .ordinal(ordinals[row])
+        .name(names[row])
+        .numRatings(numRatings[row])
+        .type(types[typeCodes[row]])
+        .build();
+    // @formatter:on
+  }
+
+  /**
+   * Return a read-only list view of the table. Each Beer is created
+   * when it is requested, so the view takes no extra memory.
+   *
+   * @return The list view.
+   */
+  public List<Beer> asList() {
+    return new AbstractList<>() {
+      @Override
+      public Beer get(int index) {
+        return getBeer(index);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Return the average ABV of all beers in the table.
+   *
+   * @return The average ABV with two decimal places.
+   */
+  public BigDecimal averageAbv() {
+    return averageAbv(null);
+  }
+
+  /**
+   * Return the average ABV of the given rows, or of all rows if rows is
+   * null.
+   */
+  BigDecimal averageAbv(int[] rows) {
+    return average(abvHundredths, rows);
+  }
+
+  /**
+   * Return the average of the average ratings of all beers in the
+   * table.
+   *
+   * @return The average rating with two decimal places.
+   */
+  public BigDecimal averageRating() {
+    return averageRating(null);
+  }
+
+  /**
+   * Return the average of the average ratings of the given rows, or of
+   * all rows if rows is null.
+   */
+  BigDecimal averageRating(int[] rows) {
+    return average(averageRatingHundredths, rows);
+  }
+
+  /**
+   * Count the beers in each ABV range. Bucket n counts the beers with
+   * an ABV from n * bucketWidth (inclusive) up to (n + 1) * bucketWidth
+   * (exclusive).
+   *
+   * @param bucketWidthHundredths The width of each bucket in hundredths
+   *        of a percent. For example, 100 gives one bucket per percent.
+   * @return The count for each bucket, up to the bucket holding the
+   *         strongest beer.
+   */
+  public int[] abvHistogram(int bucketWidthHundredths) {
+    return abvHistogram(bucketWidthHundredths, null);
+  }
+
+  /**
+   * Count the given rows, or all rows if rows is null, in each ABV
+   * range. See {@link #abvHistogram(int)}.
+   */
+  int[] abvHistogram(int bucketWidthHundredths, int[] rows) {
+    if(bucketWidthHundredths <= 0) {
+      throw new IllegalArgumentException(
+          "Bucket width must be positive: " + bucketWidthHundredths);
+    }
+
+    int count = rows == null ? size : rows.length;
+    int max = 0;
+
+    for(int index = 0; index < count; index++) {
+      max = Math.max(max, abvHundredths[rows == null ? index
+          : rows[index]]);
+    }
+
+    int[] buckets = new int[max / bucketWidthHundredths + 1];
+
+    for(int index = 0; index < count; index++) {
+      buckets[abvHundredths[rows == null ? index : rows[index]]
+          / bucketWidthHundredths]++;
+    }
+
+    return buckets;
+  }
+
+  /*
+   * The methods below return the column arrays themselves, without
+   * copying, for the classes in this package that scan whole columns.
+   * The arrays must not be changed.
+   */
+
+  int[] ordinalColumn() {
+    return ordinals;
+  }
+
+  String[] nameColumn() {
+    return names;
+  }
+
+  int[] breweryCodeColumn() {
+    return breweryCodes;
+  }
+
+  int[] typeCodeColumn() {
+    return typeCodes;
+  }
+
+  int[] abvColumn() {
+    return abvHundredths;
+  }
+
+  int[] numRatingsColumn() {
+    return numRatings;
+  }
+
+  int[] averageRatingColumn() {
+    return averageRatingHundredths;
+  }
+
+  int[] scoreColumn() {
+    return scores;
+  }
+
+  /**
+   * Return the rows in order of score, highest first. Rows with the
+   * same score are in table order. Rows removed by
+   * {@link #withChanges(int[], List, int[], List)} are not included.
+   */
+  int[] scoreOrder() {
+    return scoreOrder;
+  }
+
+  String[] breweryDictionary() {
+    return breweries;
+  }
+
+  String[] typeDictionary() {
+    return types;
+  }
+
+  /**
+   * Find the rows whose names match a query of the name index. See
+   * {@link TextIndex#rows(String)}. The name index is built as the rows
+   * are added, so it needs no extra pass over the names.
+   *
+   * @param query The words to find.
+   * @return The row ids in ascending order.
+   */
+  int[] rowsByName(String query) {
+    int[] rows = nameIndex.rows(query);
+
+    if(appendedNameIndex == null) {
+      return rows;
+    }
+
+    /* The appended rows all come after the indexed ones. */
+    int[] appended = appendedNameIndex.rows(query);
+    int[] all = Arrays.copyOf(rows, rows.length + appended.length);
+
+    System.arraycopy(appended, 0, all, rows.length, appended.length);
+
+    return all;
+  }
+
+  /**
+   * Return the number of rows covered by the name index that the table
+   * was built with. The rows after these were added by
+   * {@link #withChanges(int[], List, int[], List)}.
+   */
+  int indexedRows() {
+    return indexedRows;
+  }
+
+  /**
+   * Average a column of hundredths.
+   */
+  private BigDecimal average(int[] column, int[] rows) {
+    int count = rows == null ? size : rows.length;
+
+    if(count == 0) {
+      return BigDecimal.valueOf(0, 2);
+    }
+
+    long sum = 0;
+
+    for(int index = 0; index < count; index++) {
+      sum += column[rows == null ? index : rows[index]];
+    }
+
+    return BigDecimal.valueOf(Math.round((double) sum / count), 2);
+  }
+
+  /**
+   * Create a copy of this table with some rows changed, some removed
+   * and some added. The name, brewery and beer type of a changed row
+   * must stay the same. A removed row keeps its values but is taken out
+   * of the score order. Added rows are appended, and only their names
+   * are indexed again, in an index of their own.
+   *
+   * The columns are copied in bulk and then only the given rows are
+   * written. The score order is spliced: the old position of each
+   * changed or removed row and the new position of each changed or
+   * added row are found by binary search, and the runs of other rows
+   * between them are copied as they are.
+   *
+   * @param changedRows The changed rows in ascending order.
+   * @param changed The new values of each changed row.
+   * @param removedRows The removed rows.
+   * @param added The beers to append.
+   * @return The new table. This table is not changed.
+   */
+  BeerTable withChanges(int[] changedRows, List<Beer> changed,
+      int[] removedRows, List<Beer> added) {
+    int newSize = size + added.size();
+    int[] newOrdinals = Arrays.copyOf(ordinals, newSize);
+    int[] newAbv = Arrays.copyOf(abvHundredths, newSize);
+    int[] newNumRatings = Arrays.copyOf(numRatings, newSize);
+    int[] newRatings = Arrays.copyOf(averageRatingHundredths, newSize);
+    int[] newScores = Arrays.copyOf(scores, newSize);
+    String[] newNames = names;
+    int[] newBreweryCodes = breweryCodes;
+    int[] newTypeCodes = typeCodes;
+    String[] newBreweries = breweries;
+    String[] newTypes = types;
+    TextIndex newAppendedNameIndex = appendedNameIndex;
+
+    for(int index = 0; index < changedRows.length; index++) {
+      Beer beer = changed.get(index);
+      int row = changedRows[index];
+
+      newOrdinals[row] = beer.getOrdinal();
+      newAbv[row] = beer.getAbvHundredths();
+      newNumRatings[row] = beer.getNumRatings();
+      newRatings[row] = beer.getAverageRatingHundredths();
+      newScores[row] = prior.score(newRatings[row], newNumRatings[row]);
+    }
+
+    if(!added.isEmpty()) {
+      newNames = Arrays.copyOf(names, newSize);
+      newBreweryCodes = Arrays.copyOf(breweryCodes, newSize);
+      newTypeCodes = Arrays.copyOf(typeCodes, newSize);
+
+      int numBreweries = breweries.length;
+      int numTypes = types.length;
+
+      for(int index = 0; index < added.size(); index++) {
+        Beer beer = added.get(index);
+        int row = size + index;
+
+        newOrdinals[row] = beer.getOrdinal();
+        newNames[row] = beer.getName();
+        newBreweryCodes[row] = brewerySymbols.encode(beer.getBrewery());
+        newTypeCodes[row] = typeSymbols.encode(beer.getType());
+        newAbv[row] = beer.getAbvHundredths();
+        newNumRatings[row] = beer.getNumRatings();
+        newRatings[row] = beer.getAverageRatingHundredths();
+        newScores[row] =
+            prior.score(newRatings[row], newNumRatings[row]);
+        numBreweries = Math.max(numBreweries, newBreweryCodes[row] + 1);
+        numTypes = Math.max(numTypes, newTypeCodes[row] + 1);
+      }
+
+      /* Keep the old dictionaries if no new value was seen. */
+      if(numBreweries > breweries.length) {
+        newBreweries = brewerySymbols.toArray();
+      }
+
+      if(numTypes > types.length) {
+        newTypes = typeSymbols.toArray();
+      }
+
+      TextIndex.Builder builder = TextIndex.builder();
+
+      for(int row = indexedRows; row < newSize; row++) {
+        builder.add(row, newNames[row]);
+      }
+
+      newAppendedNameIndex = builder.build();
+    }
+
+    int[] removePositions =
+        new int[changedRows.length + removedRows.length];
+    int numRemoves = 0;
+
+    for(int row : changedRows) {
+      removePositions[numRemoves++] =
+          scorePosition(scoreKey(scores[row], row));
+    }
+
+    for(int row : removedRows) {
+      removePositions[numRemoves++] =
+          scorePosition(scoreKey(scores[row], row));
+    }
+
+    Arrays.sort(removePositions);
+
+    long[] inserts = new long[changedRows.length + added.size()];
+    int numInserts = 0;
+
+    for(int row : changedRows) {
+      inserts[numInserts++] = scoreKey(newScores[row], row);
+    }
+
+    for(int row = size; row < newSize; row++) {
+      inserts[numInserts++] = scoreKey(newScores[row], row);
+    }
+
+    Arrays.sort(inserts);
+
+    int[] newOrder =
+        new int[scoreOrder.length - numRemoves + numInserts];
+    int src = 0;
+    int dst = 0;
+    int nextRemove = 0;
+    int nextInsert = 0;
+    int insertAt = numInserts == 0 ? scoreOrder.length
+        : scorePosition(inserts[0]);
+
+    while (true) {
+      int removeAt = nextRemove < numRemoves
+          ? removePositions[nextRemove] : scoreOrder.length;
+      int copyTo = Math.min(removeAt, insertAt);
+
+      System.arraycopy(scoreOrder, src, newOrder, dst, copyTo - src);
+      dst += copyTo - src;
+      src = copyTo;
+
+      if(nextInsert < numInserts && insertAt == src) {
+        newOrder[dst++] = (int) inserts[nextInsert++];
+        insertAt = nextInsert < numInserts
+            ? scorePosition(inserts[nextInsert]) : scoreOrder.length;
+      }
+      else if(nextRemove < numRemoves && removeAt == src) {
+        src++;
+        nextRemove++;
+      }
+      else {
+        break;
+      }
+    }
+
+    return new BeerTable(this, newOrdinals, newNames, newBreweryCodes,
+        newTypeCodes, newAbv, newNumRatings, newRatings, newScores,
+        newOrder, newBreweries, newTypes, newAppendedNameIndex);
+  }
+
+  /**
+   * Create a copy of this table with new ordinals for some rows. Only
+   * the ordinal column is copied. The other columns, the score order
+   * and the name indexes do not depend on the ordinals, so they are
+   * shared.
+   *
+   * @param rows The rows to change.
+   * @param newOrdinals The new ordinal of each row.
+   * @return The new table. This table is not changed.
+   */
+  BeerTable withOrdinals(int[] rows, int[] newOrdinals) {
+    int[] ordinals = this.ordinals.clone();
+
+    for(int index = 0; index < rows.length; index++) {
+      ordinals[rows[index]] = newOrdinals[index];
+    }
+
+    return new BeerTable(this, ordinals, names, breweryCodes, typeCodes,
+        abvHundredths, numRatings, averageRatingHundredths, scores,
+        scoreOrder, breweries, types, appendedNameIndex);
+  }
+
+  /**
+   * Create a table that holds the rows of this table that are not in
+   * the given set, in the same order, with all of the names in one name
+   * index. The breweries and beer types are encoded again in new symbol
+   * tables, so the ones that only the removed rows had are dropped and
+   * the dictionaries do not grow with every diff that is applied.
+   *
+   * @param removed The rows to leave out.
+   * @return The new table.
+   */
+  BeerTable compact(RowBitmap removed) {
+    Builder builder =
+        new Builder(new SymbolTable(), new SymbolTable()).prior(prior);
+
+    builder.allocate(Math.max(size - removed.cardinality(), 1));
+
+    for(int row = 0; row < size; row++) {
+      if(!removed.contains(row)) {
+        builder.add(getBeer(row));
+      }
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Return the position in the score order of the first row whose key
+   * is not less than the given one.
+   */
+  private int scorePosition(long key) {
+    int low = 0;
+    int high = scoreOrder.length;
+
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      int row = scoreOrder[mid];
+
+      if(scoreKey(scores[row], row) < key) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+
+  /**
+   * Sort the rows by score, highest first. Each row is packed into a
+   * long with its inverted score in the high bits so that a primitive
+   * sort puts them in order.
+   */
+  private static int[] sortByScore(int[] scores) {
+    long[] keys = new long[scores.length];
+
+    for(int row = 0; row < scores.length; row++) {
+      keys[row] = scoreKey(scores[row], row);
+    }
+
+    Arrays.sort(keys);
+
+    int[] rows = new int[scores.length];
+
+    for(int index = 0; index < keys.length; index++) {
+      rows[index] = (int) keys[index];
+    }
+
+    return rows;
+  }
+
+  /**
+   * Pack a row and its score into a long that sorts higher scores
+   * first and then by row.
+   */
+  private static long scoreKey(int score, int row) {
+    return (long) (Integer.MAX_VALUE - score) << 32 | row;
+  }
+
+  private int checkRow(int row) {
+    if(row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException(
+          "Row " + row + " out of range 0.." + size);
+    }
+
+    return row;
+  }
+
+  /**
+   * This class collects rows for a new BeerTable. Rows are added one at
+   * a time so that a table can be built directly from a stream of
+   * parsed Beers without holding them all in a list first.
+   */
+  public static class Builder {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private int size;
+    private int[] ordinals;
+    private String[] names;
+    private int[] breweryCodes;
+    private int[] typeCodes;
+    private int[] abvHundredths;
+    private int[] numRatings;
+    private int[] averageRatingHundredths;
+    private final SymbolTable breweries;
+    private final SymbolTable types;
+    private final TextIndex.Builder nameIndex = TextIndex.builder();
+    private int[] scores;
+    private BayesianPrior prior = BayesianPrior.DEFAULT;
+
+    private Builder(SymbolTable breweries, SymbolTable types) {
+      this.breweries = breweries;
+      this.types = types;
+      allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Set the prior used to calculate the score of each row. This must
+     * be called before any rows are added.
+     *
+     * @param prior The prior.
+     * @return This builder.
+     */
+    public Builder prior(BayesianPrior prior) {
+      if(size > 0) {
+        throw new IllegalStateException(
+            "The prior must be set before rows are added");
+      }
+
+      this.prior = prior;
+
+      return this;
+    }
+
+    /**
+     * Add a Beer as the next row.
+     *
+     * @param beer The Beer to add.
+     * @return This builder.
+     */
+    public Builder add(Beer beer) {
+      if(size == ordinals.length) {
+        allocate(size * 2);
+      }
+
+      ordinals[size] = beer.getOrdinal();
+      names[size] = beer.getName();
+      nameIndex.add(size, beer.getName());
+      breweryCodes[size] = breweries.encode(beer.getBrewery());
+      typeCodes[size] = types.encode(beer.getType());
+      abvHundredths[size] = beer.getAbvHundredths();
+      numRatings[size] = beer.getNumRatings();
+      averageRatingHundredths[size] = beer.getAverageRatingHundredths();
+      scores[size] = prior.score(beer.getAverageRatingHundredths(),
+          beer.getNumRatings());
+      size++;
+
+      return this;
+    }
+
+    /**
+     * Replace a row that was already added with a newer scrape of the
+     * same beer, which has the same key (see {@link Beer#key()}). The
+     * ordinal, beer type, ABV, rating count and average rating are
+     * replaced.
+     *
+     * @param row The row to replace.
+     * @param beer The new values of the row.
+     * @return This builder.
+     * @throws IllegalArgumentException Thrown if the beer has a
+     *         different key than the row. The brewery is looked up
+     *         without adding it to the symbol table.
+     */
+    public Builder set(int row, Beer beer) {
+      if(row < 0 || row >= size) {
+        throw new IndexOutOfBoundsException(
+            "Row " + row + " out of range 0.." + size);
+      }
+
+      if(!names[row].equals(beer.getName())
+          || breweryCodes[row] != breweries.find(beer.getBrewery())) {
+        throw new IllegalArgumentException(
+            "Row " + row + " is not the same beer as " + beer);
+      }
+
+      ordinals[row] = beer.getOrdinal();
+      typeCodes[row] = types.encode(beer.getType());
+      abvHundredths[row] = beer.getAbvHundredths();
+      numRatings[row] = beer.getNumRatings();
+      averageRatingHundredths[row] = beer.getAverageRatingHundredths();
+      scores[row] = prior.score(beer.getAverageRatingHundredths(),
+          beer.getNumRatings());
+
+      return this;
+    }
+
+    /**
+     * Return the number of rows added so far.
+     *
+     * @return The number of rows.
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Create the table.
+     *
+     * @return The new table.
+     */
+    public BeerTable build() {
+      return new BeerTable(this);
+    }
+
+    private void allocate(int capacity) {
+      ordinals = grow(ordinals, capacity);
+      names = names == null ? new String[capacity]
+          : Arrays.copyOf(names, capacity);
+      breweryCodes = grow(breweryCodes, capacity);
+      typeCodes = grow(typeCodes, capacity);
+      abvHundredths = grow(abvHundredths, capacity);
+      numRatings = grow(numRatings, capacity);
+      averageRatingHundredths = grow(averageRatingHundredths, capacity);
+      scores = grow(scores, capacity);
+    }
+
+    private int[] grow(int[] column, int capacity) {
+      return column == null ? new int[capacity]
+          : Arrays.copyOf(column, capacity);
+    }
+  }
+}
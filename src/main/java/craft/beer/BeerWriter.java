@@ -0,0 +1,212 @@
+package craft.beer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class writes beers to a file or to standard output in one of
+ * the {@link BeerFormat}s. Printing each beer with System.out.println
+ * takes a lock, converts the beer with toString and flushes the console
+ * on every line. This class instead formats beers into a batch of
+ * characters and hands the batch to the output only when it is full.
+ * The output has a large buffer and is only flushed when
+ * {@link #flush()} or {@link #close()} is called, so millions of beers
+ * take a few large writes.
+ *
+ * A BeerWriter is not thread safe.
+ *
+ * @author Promineo
+ *
+ */
+public class BeerWriter implements Closeable {
+  /* The number of characters formatted before they are written. */
+  private static final int BATCH_SIZE = 1 << 15;
+
+  /* The size of the output buffer in bytes. */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private final Writer out;
+  private final BeerFormat format;
+  private final StringBuilder batch = new StringBuilder(BATCH_SIZE * 2);
+  private char[] chars = new char[BATCH_SIZE * 2];
+  private long count;
+
+  /**
+   * Create a writer over an output stream. The format's header, if it
+   * has one, is written first. Closing the writer closes the stream.
+   *
+   * @param stream The stream to write UTF-8 text to.
+   * @param format The format to write.
+   */
+  public BeerWriter(OutputStream stream, BeerFormat format) {
+    this.out = new OutputStreamWriter(
+        new BufferedOutputStream(stream, BUFFER_SIZE),
+        StandardCharsets.UTF_8);
+    this.format = format;
+
+    batch.append(format.header());
+  }
+
+  /**
+   * Create a writer that replaces a file.
+   *
+   * @param file The file to write.
+   * @param format The format to write.
+   * @return The writer.
+   */
+  public static BeerWriter open(Path file, BeerFormat format) {
+    return open(file, format, false);
+  }
+
+  /**
+   * Create a writer that replaces a file, optionally compressing it
+   * with gzip. The gzip output uses the fastest compression level,
+   * which still shrinks beer data several times but compresses quickly
+   * enough to keep up with the disk.
+   *
+   * @param file The file to write.
+   * @param format The format to write.
+   * @param gzip True to compress the file with gzip.
+   * @return The writer.
+   */
+  public static BeerWriter open(Path file, BeerFormat format,
+      boolean gzip) {
+    try {
+      OutputStream stream = Files.newOutputStream(file);
+
+      if(gzip) {
+        stream = new GZIPOutputStream(stream, 1 << 16) {
+          {
+            def.setLevel(Deflater.BEST_SPEED);
+          }
+        };
+      }
+
+      return new BeerWriter(stream, format);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Create a writer to standard output. This bypasses System.out, so
+   * nothing should be printed to System.out until the writer is
+   * closed. Closing the writer flushes standard output but does not
+   * close it.
+   *
+   * @param format The format to write.
+   * @return The writer.
+   */
+  public static BeerWriter standardOutput(BeerFormat format) {
+    OutputStream stream = new FileOutputStream(FileDescriptor.out) {
+      @Override
+      public void close() {
+        /* Keep standard output open for the application. */
+      }
+    };
+
+    return new BeerWriter(stream, format);
+  }
+
+  /**
+   * Write one beer.
+   *
+   * @param beer The beer.
+   */
+  public void write(Beer beer) {
+    format.append(batch, beer);
+    count++;
+
+    if(batch.length() >= BATCH_SIZE) {
+      writeBatch();
+    }
+  }
+
+  /**
+   * Write every beer in a collection or list view, such as
+   * {@link BeerTable#asList()}.
+   *
+   * @param beers The beers.
+   */
+  public void writeAll(Iterable<Beer> beers) {
+    for(Beer beer : beers) {
+      write(beer);
+    }
+  }
+
+  /**
+   * Return the number of beers written so far.
+   *
+   * @return The number of beers.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Write the beers that are waiting in the batch and flush the output.
+   */
+  public void flush() {
+    writeBatch();
+
+    try {
+      out.flush();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Write the beers that are waiting in the batch and close the output.
+   * The output is closed even if the last batch cannot be written.
+   */
+  @Override
+  public void close() {
+    try (out) {
+      writeBatch();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Copy the batch into a char array and write it. Writing the array
+   * avoids turning the batch into a String.
+   */
+  private void writeBatch() {
+    int length = batch.length();
+
+    if(length == 0) {
+      return;
+    }
+
+    if(chars.length < length) {
+      chars = new char[length];
+    }
+
+    batch.getChars(0, length, chars, 0);
+    batch.setLength(0);
+
+    try {
+      out.write(chars, 0, length);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package craft.beer;
+
+import java.util.Arrays;
+
+/**
+ * This class indexes the rows of a {@link BeerTable} by a column of
+ * small int keys, such as a dictionary code or a bucket number, and
+ * holds the rows for each key as a {@link RowBitmap}. Filters on
+ * several columns are combined by intersecting, uniting and
+ * subtracting the bitmaps instead of testing every row.
+ *
+ * A BitmapIndex is immutable.
+ *
+ * @author Promineo
+ *
+ */
+class BitmapIndex {
+  private final RowBitmap[] bitmaps;
+  private final int bucketWidth;
+
+  /**
+   * Build an index over a coded column. The bitmaps are built in one
+   * pass over the column.
+   *
+   * @param column The code of each row.
+   * @param numCodes The number of distinct codes.
+   */
+  BitmapIndex(int[] column, int numCodes) {
+    this(column, numCodes, 1);
+  }
+
+  /**
+   * Build an index over a numeric column. Row values are divided by the
+   * bucket width, so bucket n holds the rows whose value is from
+   * n * bucketWidth (inclusive) up to (n + 1) * bucketWidth
+   * (exclusive). Values must not be negative.
+   *
+   * @param column The value of each row.
+   * @param numBuckets The number of buckets.
+   * @param bucketWidth The range of values in each bucket.
+   */
+  BitmapIndex(int[] column, int numBuckets, int bucketWidth) {
+    this.bucketWidth = bucketWidth;
+
+    RowBitmap.Builder[] builders = new RowBitmap.Builder[numBuckets];
+
+    for(int row = 0; row < column.length; row++) {
+      builder(builders, column[row] / bucketWidth).add(row);
+    }
+
+    bitmaps = new RowBitmap[numBuckets];
+
+    for(int key = 0; key < numBuckets; key++) {
+      bitmaps[key] = builders[key] == null ? RowBitmap.empty()
+          : builders[key].build();
+    }
+  }
+
+  private BitmapIndex(RowBitmap[] bitmaps, int bucketWidth) {
+    this.bitmaps = bitmaps;
+    this.bucketWidth = bucketWidth;
+  }
+
+  /**
+   * Create an index over a numeric column with enough buckets to hold
+   * the largest value.
+   *
+   * @param column The value of each row.
+   * @param bucketWidth The range of values in each bucket.
+   * @return The index.
+   */
+  static BitmapIndex ofBuckets(int[] column, int bucketWidth) {
+    int max = 0;
+
+    for(int value : column) {
+      max = Math.max(max, value);
+    }
+
+    return new BitmapIndex(column, max / bucketWidth + 1, bucketWidth);
+  }
+
+  /**
+   * Create an index for the same column with some rows taken out and
+   * some put in. A changed row is in both lists, and is only moved if
+   * its key changed. Only the bitmaps of the keys that rows moved out
+   * of or into are rebuilt, and the rest are shared with this index.
+   *
+   * @param removedRows The rows to take out, in ascending order.
+   * @param oldColumn The value of each row in this index.
+   * @param addedRows The rows to put in, in ascending order.
+   * @param newColumn The new value of each row.
+   * @param numKeys The least number of keys of the new index, such as
+   *        the size of a dictionary that has grown.
+   * @return The new index, or this index if nothing changed. This
+   *         index is not changed.
+   */
+  BitmapIndex update(int[] removedRows, int[] oldColumn,
+      int[] addedRows, int[] newColumn, int numKeys) {
+    if(removedRows.length == 0 && addedRows.length == 0
+        && numKeys <= bitmaps.length) {
+      return this;
+    }
+
+    int numBuckets = Math.max(bitmaps.length, numKeys);
+
+    for(int row : addedRows) {
+      numBuckets =
+          Math.max(numBuckets, newColumn[row] / bucketWidth + 1);
+    }
+
+    RowBitmap[] updated = Arrays.copyOf(bitmaps, numBuckets);
+    RowBitmap.Builder[] removed = new RowBitmap.Builder[numBuckets];
+    RowBitmap.Builder[] added = new RowBitmap.Builder[numBuckets];
+    int next = 0;
+
+    /* Walk both lists together to find the rows that are in both. */
+    for(int row : removedRows) {
+      while (next < addedRows.length && addedRows[next] < row) {
+        int addedRow = addedRows[next++];
+
+        builder(added, newColumn[addedRow] / bucketWidth)
+            .add(addedRow);
+      }
+
+      int oldKey = oldColumn[row] / bucketWidth;
+
+      if(next < addedRows.length && addedRows[next] == row) {
+        next++;
+
+        int newKey = newColumn[row] / bucketWidth;
+
+        if(oldKey == newKey) {
+          continue;
+        }
+
+        builder(added, newKey).add(row);
+      }
+
+      builder(removed, oldKey).add(row);
+    }
+
+    while (next < addedRows.length) {
+      int row = addedRows[next++];
+
+      builder(added, newColumn[row] / bucketWidth).add(row);
+    }
+
+    for(int key = 0; key < numBuckets; key++) {
+      RowBitmap bitmap =
+          updated[key] == null ? RowBitmap.empty() : updated[key];
+
+      if(removed[key] != null) {
+        bitmap = bitmap.andNot(removed[key].build());
+      }
+
+      if(added[key] != null) {
+        bitmap = bitmap.or(added[key].build());
+      }
+
+      updated[key] = bitmap;
+    }
+
+    return new BitmapIndex(updated, bucketWidth);
+  }
+
+  private static RowBitmap.Builder builder(RowBitmap.Builder[] builders,
+      int key) {
+    if(builders[key] == null) {
+      builders[key] = RowBitmap.builder();
+    }
+
+    return builders[key];
+  }
+
+  /**
+   * Return the rows that have the given key.
+   *
+   * @param key The code or bucket number.
+   * @return The rows. The bitmap is empty if no rows have the key.
+   */
+  RowBitmap rows(int key) {
+    if(key < 0 || key >= bitmaps.length) {
+      return RowBitmap.empty();
+    }
+
+    return bitmaps[key];
+  }
+
+  /**
+   * Return the rows that have any key in the given range.
+   *
+   * @param minKey The smallest key (inclusive).
+   * @param maxKey The largest key (inclusive).
+   * @return The union of the rows for each key.
+   */
+  RowBitmap rows(int minKey, int maxKey) {
+    RowBitmap rows = RowBitmap.empty();
+
+    for(int key = Math.max(minKey, 0);
+        key <= Math.min(maxKey, bitmaps.length - 1); key++) {
+      rows = rows.or(bitmaps[key]);
+    }
+
+    return rows;
+  }
+}
@@ -0,0 +1,308 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * This class is the base of the readers that decode a beer data file
+ * a byte at a time, such as CSV and JSON Lines. It reads the file
+ * through a single reused buffer and collects the bytes of the current
+ * field in a reused array, so the only objects created for each beer
+ * are the name, the brewery and beer type if they have not been seen
+ * before, and the Beer itself. Numbers are decoded from the field bytes
+ * without creating a String.
+ *
+ * In lenient mode a record that cannot be read is added to the
+ * diagnostics, and reading carries on from the next line.
+ *
+ * A reader is not thread-safe. Each call to {@link #read(Consumer)}
+ * reads the file from the start.
+ *
+ * @author Promineo
+ *
+ */
+abstract class ByteBeerSource implements BeerSource {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /* The Beer fields that the readers look for, in CSV column order. */
+  static final int ORDINAL = 0;
+  static final int NAME = 1;
+  static final int BREWERY = 2;
+  static final int TYPE = 3;
+  static final int ABV = 4;
+  static final int NUM_RATINGS = 5;
+  static final int AVERAGE_RATING = 6;
+
+  static final String[] FIELD_NAMES = {"ordinal", "name", "brewery",
+      "type", "abv", "numRatings", "averageRating"};
+
+  private final Path path;
+  private final SymbolTable breweries;
+  private final SymbolTable types;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private InputStream in;
+  private int pos;
+  private int limit;
+  private int line;
+  private int recordLine;
+  private ParseDiagnostics diagnostics;
+
+  /* The bytes of the fields being decoded. */
+  byte[] field = new byte[256];
+  int fieldLength;
+
+  ByteBeerSource(Path path, SymbolTable breweries, SymbolTable types) {
+    this.path = path;
+    this.breweries = breweries;
+    this.types = types;
+  }
+
+  @Override
+  public void read(Consumer<? super Beer> consumer,
+      ParseDiagnostics diagnostics) throws IOException {
+    try (InputStream stream = Files.newInputStream(path)) {
+      this.diagnostics = diagnostics;
+      in = stream;
+      pos = 0;
+      limit = 0;
+      line = 1;
+      recordLine = 1;
+
+      if(fill()) {
+        pos = skipByteOrderMark(buffer, limit);
+      }
+
+      readRecords(consumer);
+    }
+    finally {
+      in = null;
+      this.diagnostics = null;
+    }
+  }
+
+  /**
+   * Read every record in the file.
+   *
+   * @param consumer Receives each Beer in file order.
+   * @throws IOException Thrown if the file cannot be read.
+   */
+  abstract void readRecords(Consumer<? super Beer> consumer)
+      throws IOException;
+
+  /**
+   * Return the position after a UTF-8 byte order mark at the start of
+   * the bytes, or 0 if there is none.
+   */
+  static int skipByteOrderMark(byte[] bytes, int length) {
+    if(length >= 3 && bytes[0] == (byte) 0xef && bytes[1] == (byte) 0xbb
+        && bytes[2] == (byte) 0xbf) {
+      return 3;
+    }
+
+    return 0;
+  }
+
+  /**
+   * Read the next byte.
+   *
+   * @return The byte, from 0 to 255, or -1 at the end of the file.
+   */
+  int next() throws IOException {
+    if(pos == limit && !fill()) {
+      return -1;
+    }
+
+    byte b = buffer[pos++];
+
+    if(b == '\n') {
+      line++;
+    }
+
+    return b & 0xff;
+  }
+
+  /**
+   * Return the next byte without reading it.
+   *
+   * @return The byte, from 0 to 255, or -1 at the end of the file.
+   */
+  int peek() throws IOException {
+    if(pos == limit && !fill()) {
+      return -1;
+    }
+
+    return buffer[pos] & 0xff;
+  }
+
+  private boolean fill() throws IOException {
+    int count = in.read(buffer, 0, buffer.length);
+
+    pos = 0;
+    limit = Math.max(count, 0);
+
+    return count > 0;
+  }
+
+  /**
+   * Skip the rest of the current line, unless the last byte read ended
+   * a line.
+   */
+  void skipLine() throws IOException {
+    if(pos > 0 && buffer[pos - 1] == '\n') {
+      return;
+    }
+
+    int ch;
+
+    while ((ch = next()) != -1 && ch != '\n') {
+      continue;
+    }
+  }
+
+  /**
+   * Add a bad record to the diagnostics in lenient mode. In strict mode
+   * the exception is thrown.
+   */
+  void skip(BadRecordException e) {
+    if(diagnostics == null) {
+      throw e;
+    }
+
+    diagnostics.add(e.line, e.field, e.reason);
+  }
+
+  /**
+   * Note that a new record starts at the current line, so that errors
+   * report the line the record started on.
+   */
+  void startRecord() {
+    recordLine = line;
+  }
+
+  /**
+   * Add a byte to the field bytes.
+   */
+  void append(int b) {
+    if(fieldLength == field.length) {
+      byte[] bigger = new byte[field.length * 2];
+
+      System.arraycopy(field, 0, bigger, 0, fieldLength);
+      field = bigger;
+    }
+
+    field[fieldLength++] = (byte) b;
+  }
+
+  /**
+   * Decode a range of the field bytes as a UTF-8 String.
+   */
+  String string(int from, int to) {
+    return new String(field, from, to - from, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Decode a range of the field bytes as a brewery name and intern it.
+   */
+  String brewery(int from, int to) {
+    return breweries.intern(string(from, to));
+  }
+
+  /**
+   * Decode a range of the field bytes as a beer type and intern it.
+   */
+  String type(int from, int to) {
+    return types.intern(string(from, to));
+  }
+
+  /**
+   * Decode a range of the field bytes as a non-negative int. Spaces
+   * around the number and commas inside it, as in "1,795", are
+   * ignored.
+   */
+  int parseInt(int from, int to, int fieldNumber) {
+    int value = 0;
+    boolean digitFound = false;
+
+    for(int index = from; index < to; index++) {
+      byte b = field[index];
+
+      if(b >= '0' && b <= '9') {
+        value = value * 10 + (b - '0');
+        digitFound = true;
+      }
+      else if(b != ',' && b != ' ') {
+        throw invalid(fieldNumber, from, to);
+      }
+    }
+
+    if(!digitFound) {
+      throw invalid(fieldNumber, from, to);
+    }
+
+    return value;
+  }
+
+  /**
+   * Decode a range of the field bytes as a decimal number like "4.83"
+   * and return it in hundredths (483), as
+   * {@link Beer#parseHundredths(CharSequence)} does. Spaces and a
+   * trailing '%' are ignored.
+   */
+  int parseHundredths(int from, int to, int fieldNumber) {
+    long state = Beer.HUNDREDTHS_START;
+
+    for(int index = from; index < to; index++) {
+      byte b = field[index];
+
+      if(b != ' ' && (b != '%' || index != to - 1)) {
+        state = Beer.nextHundredths(state, b);
+      }
+    }
+
+    int value = Beer.hundredths(state);
+
+    if(value < 0) {
+      throw invalid(fieldNumber, from, to);
+    }
+
+    return value;
+  }
+
+  /**
+   * Create an exception for a problem in the current record.
+   */
+  BadRecordException error(String message) {
+    return new BadRecordException(path, recordLine, "record", message);
+  }
+
+  private BadRecordException invalid(int fieldNumber, int from,
+      int to) {
+    String field = FIELD_NAMES[fieldNumber];
+
+    return new BadRecordException(path, recordLine, field,
+        "Invalid " + field + ": " + string(from, to));
+  }
+
+  /**
+   * Thrown when a record cannot be read. It holds the line, field and
+   * reason for the diagnostics.
+   */
+  @SuppressWarnings("serial")
+  static class BadRecordException extends IllegalStateException {
+    private final long line;
+    private final String field;
+    private final String reason;
+
+    BadRecordException(Path path, long line, String field,
+        String reason) {
+      super(path + " line " + line + ": " + reason);
+      this.line = line;
+      this.field = field;
+      this.reason = reason;
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package craft.beer;
 
+import java.nio.file.Paths;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -25,7 +27,18 @@ public class CraftBeerApplication implements CommandLineRunner {
    * object into the instance variable.
    */
   @Autowired
-  private CraftBeerService craftBeerService;
+  private BeerRepository beerRepository;
+
+  /** The format the beers are printed in: TEXT, CSV or JSONL. */
+  @Value("${craft.beer.output.format:TEXT}")
+  private BeerFormat outputFormat = BeerFormat.TEXT;
+
+  /**
+   * The file the beers are written to. A blank value means standard
+   * output.
+   */
+  @Value("${craft.beer.output.file:}")
+  private String outputFile = "";
 
   /**
    * Entry point to the Java application. This method starts Spring
@@ -40,18 +53,33 @@ public class CraftBeerApplication implements CommandLineRunner {
   /**
    * Spring Boot calls this method after it has completed its startup
    * and after Dependency Injection is complete. This method asks the
-   * Spring-supplied craft beer service to parse the beer data and
-   * return a list of Beer objects.
+   * Spring-supplied beer repository to load the beer data and return a
+   * list of Beer objects. The repository ingests the files given by
+   * craft.beer.data.files if it is set. Otherwise it loads the single
+   * data file, from a binary snapshot when the file has not changed
+   * since the last run. The beers are then written with a
+   * {@link BeerWriter}, which formats them in batches instead of
+   * printing them one at a time.
    */
   @Override
   public void run(String... args) throws Exception {
-    List<Beer> craftBeers = craftBeerService.parseBeerFile();
+    List<Beer> craftBeers = beerRepository.getCatalog().asList();
 
     /*
      * At this point you could persist the beers to a beer table or do
      * something else. I've just decided to print the beer objects.
      */
-    craftBeers.forEach(beer -> System.out.println(beer));
+    try (BeerWriter writer = openWriter()) {
+      writer.writeAll(craftBeers);
+    }
+  }
+
+  private BeerWriter openWriter() {
+    if(outputFile.isBlank()) {
+      return BeerWriter.standardOutput(outputFormat);
+    }
+
+    return BeerWriter.open(Paths.get(outputFile), outputFormat);
   }
 
 }
@@ -1,13 +1,24 @@
 package craft.beer;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
@@ -25,12 +36,73 @@ import org.springframework.stereotype.Service;
  */
 @Service
 public class CraftBeerService {
+  private static final Logger log =
+      LoggerFactory.getLogger(CraftBeerService.class);
 
   private static final String FILE_NAME = "beer-data.txt";
 
+  /**
+   * The beer data file. A blank value means use the beer-data.txt file
+   * on the classpath.
+   */
+  @Value("${craft.beer.data.file:}")
+  private String dataFile;
+
+  /**
+   * The number of threads used by {@link #parseBeerFileInParallel()}.
+   * Zero means use one thread per available processor.
+   */
+  @Value("${craft.beer.parser.threads:0}")
+  private int parserThreads;
+
+  /**
+   * Turns on lenient parsing in {@link #parseBeerTable(Path)} and
+   * wherever {@link #newDiagnostics()} is used, such as updates and
+   * exports. Bad records are skipped instead of failing the whole
+   * read.
+   */
+  @Value("${craft.beer.parser.lenient:false}")
+  private boolean lenient;
+
+  /** The most bad records that a lenient parse keeps details of. */
+  @Value("${craft.beer.parser.max-diagnostics:100}")
+  private int maxDiagnostics = 100;
+
+  /**
+   * The binary snapshot file written by {@link #loadBeerTable()}. A
+   * blank value turns snapshots off.
+   */
+  @Value("${craft.beer.snapshot.file:}")
+  private String snapshotFile;
+
+  /**
+   * The prior rating used to calculate the Bayesian score of each beer.
+   * See {@link BayesianPrior}.
+   */
+  @Value("${craft.beer.score.prior-rating:4.00}")
+  private BigDecimal priorRating = new BigDecimal("4.00");
+
+  /**
+   * The number of ratings that the prior rating counts as.
+   */
+  @Value("${craft.beer.score.prior-weight:500}")
+  private int priorWeight = 500;
+
+  /*
+   * Breweries and beer types repeat across many beers. These tables
+   * make sure that each distinct value is held in memory only once by
+   * the parsers that return lists of Beers. Tables are not built with
+   * them: each table, and each source opened for a diff or an ingest,
+   * gets its own symbol tables, so breweries and beer types that are no
+   * longer in the data are not kept from one reload to the next.
+   */
+  private final SymbolTable breweries = new SymbolTable();
+  private final SymbolTable types = new SymbolTable();
+
   /**
    * Parse the beer data file. This loads the beer data file from the
-   * classpath. Beer data looks like this:
+   * classpath, or from the file named by the craft.beer.data.file
+   * property if it is set. Beer data looks like this:
    * 
    * <pre>
    ordinal beer-name
@@ -38,39 +110,372 @@ public class CraftBeerService {
    beer-type | ABV% num-ratings average-rating
    * </pre>
    * 
-   * After loading the beer data, this method compresses the 3-lines
-   * of beer data into a single line like this:
+   * The beer data is read by {@link #streamBeerFile()}, which
+   * compresses each 3-line record into a single line like this:
    * 
    * <pre>
    ordinal beer-name | brewery | beer-type | ABV% num-ratings average-rating
    * </pre>
    * 
-   * Finally, the beer data lines are parsed and Beer objects are
-   * returned.
+   * This method simply collects the streamed Beer objects into a list.
    * 
    * @return The list of craft beers.
    */
   public List<Beer> parseBeerFile() {
-    List<String> rawlines = loadBeerFile();
+    try (Stream<Beer> beers = streamBeerFile()) {
+      return beers.collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Stream the beer data file. See
+   * {@link #streamBeerFile(Path)}.
+   * 
+   * @return A stream of Beer objects. The stream must be closed.
+   */
+  public Stream<Beer> streamBeerFile() {
+    return streamBeerFile(beerFilePath());
+  }
+
+  /**
+   * Stream the given beer data file. The file is read a record (3
+   * lines) at a time so that only the current record is held in
+   * memory, no matter how large the file is. Any partial record at the
+   * end of the file is ignored.
+   * 
+   * The stream holds the file open so it must be closed by the caller,
+   * preferably in a try-with-resources block.
+   * 
+   * @param path The path to the beer data file.
+   * @return A stream of Beer objects in file order.
+   */
+  public Stream<Beer> streamBeerFile(Path path) {
+    try {
+      BufferedReader reader = Files.newBufferedReader(path);
+
+      return StreamSupport
+          .stream(new BeerRecordSpliterator(reader), false)
+          .onClose(() -> close(reader));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Parse the beer data file using the
+   * memory-mapped parser. See {@link #parseMappedBeerFile(Path)}.
+   * 
+   * @return The list of craft beers.
+   */
+  public List<Beer> parseMappedBeerFile() {
+    return parseMappedBeerFile(beerFilePath());
+  }
+
+  /**
+   * Parse the given beer data file by memory-mapping it and scanning
+   * the raw bytes. This avoids the String and StringBuilder copies made
+   * by {@link #streamBeerFile(Path)} and is the preferred way to parse
+   * very large files. The result is the same as
+   * {@link #parseBeerFile()}.
+   * 
+   * @param path The path to the beer data file.
+   * @return The list of craft beers in file order.
+   */
+  public List<Beer> parseMappedBeerFile(Path path) {
+    try (FileChannel channel = FileChannel.open(path)) {
+      List<Beer> beers = new ArrayList<>();
+
+      new MappedBeerParser(channel, breweries, types).parse(beers::add);
+
+      return beers;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Parse the beer data file on multiple threads.
+   * See {@link #parseBeerFileInParallel(Path)}.
+   * 
+   * @return The list of craft beers.
+   */
+  public List<Beer> parseBeerFileInParallel() {
+    return parseBeerFileInParallel(beerFilePath());
+  }
+
+  /**
+   * Parse the given beer data file on multiple threads. The file is
+   * split into chunks on record boundaries and each chunk is parsed by
+   * the memory-mapped parser on a fork/join pool. The number of threads
+   * is set by the craft.beer.parser.threads property. The result is the
+   * same as {@link #parseBeerFile()}.
+   * 
+   * @param path The path to the beer data file.
+   * @return The list of craft beers in file order.
+   */
+  public List<Beer> parseBeerFileInParallel(Path path) {
+    try {
+      return new ParallelBeerParser(parserThreads, breweries, types)
+          .parse(path);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Return the symbol table used to intern brewery names by the
+   * parsers that return lists of Beers.
+   * 
+   * @return The brewery symbol table.
+   */
+  public SymbolTable getBreweries() {
+    return breweries;
+  }
+
+  /**
+   * Return the symbol table used to intern beer types by the parsers
+   * that return lists of Beers.
+   * 
+   * @return The beer type symbol table.
+   */
+  public SymbolTable getTypes() {
+    return types;
+  }
+
+  /**
+   * Open a beer data file in any of the supported formats, detected
+   * from the start of the file. The source interns breweries and beer
+   * types in symbol tables of its own, which are dropped with it.
+   * 
+   * @param path The path to the beer data file.
+   * @return The source.
+   */
+  public BeerSource openBeerSource(Path path) {
+    try {
+      return BeerSource.open(path, new SymbolTable(),
+          new SymbolTable());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Create a table builder that scores beers with the configured prior,
+   * so the table matches the tables parsed by this service. The builder
+   * encodes breweries and beer types in new symbol tables of its own.
+   * 
+   * @return The new builder.
+   */
+  public BeerTable.Builder newTableBuilder() {
+    return BeerTable.builder().prior(prior());
+  }
+
+  /**
+   * Parse the beer data file into a column-oriented
+   * table. See {@link #parseBeerTable(Path)}.
+   * 
+   * @return The table of craft beers.
+   */
+  public BeerTable parseBeerTable() {
+    return parseBeerTable(beerFilePath());
+  }
+
+  /**
+   * Parse the given beer data file into a column-oriented table. The
+   * file may be in the 3-line format, CSV or JSON Lines. The format is
+   * detected from the start of the file (see {@link BeerSource}), and
+   * the reader for that format passes each Beer straight to the table
+   * builder so no list of Beer objects is created. The 3-line format is
+   * read by the memory-mapped parser.
+   * 
+   * If the craft.beer.parser.lenient property is true, bad records are
+   * skipped and logged as warnings. Otherwise the first bad record
+   * throws an exception.
+   * 
+   * @param path The path to the beer data file.
+   * @return The table of craft beers in file order.
+   */
+  public BeerTable parseBeerTable(Path path) {
+    ParseDiagnostics diagnostics = newDiagnostics();
+    BeerTable table = parseBeerTable(path, diagnostics);
+
+    logDiagnostics(path, diagnostics);
+
+    return table;
+  }
+
+  /**
+   * Create the diagnostics for reading a beer data file in the parse
+   * mode set by the craft.beer.parser.lenient property. Pass them to
+   * {@link BeerSource#read(java.util.function.Consumer,
+   * ParseDiagnostics)} and then to
+   * {@link #logDiagnostics(Path, ParseDiagnostics)}.
+   * 
+   * @return New diagnostics in lenient mode, or null in strict mode.
+   */
+  public ParseDiagnostics newDiagnostics() {
+    return lenient ? new ParseDiagnostics(maxDiagnostics) : null;
+  }
+
+  /**
+   * Log the bad records that were skipped while reading a beer data
+   * file, as warnings.
+   * 
+   * @param path The beer data file.
+   * @param diagnostics The diagnostics from
+   *        {@link #newDiagnostics()}, which may be null.
+   */
+  public void logDiagnostics(Path path, ParseDiagnostics diagnostics) {
+    if(diagnostics == null || diagnostics.isEmpty()) {
+      return;
+    }
+
+    log.warn("Skipped {} bad records in {}",
+        diagnostics.getErrorCount(), path);
+
+    for(ParseDiagnostic diagnostic : diagnostics.getDiagnostics()) {
+      log.warn("{}: {}", path, diagnostic);
+    }
+  }
+
+  /**
+   * Parse the given beer data file into a column-oriented table,
+   * optionally skipping bad records. See {@link #parseBeerTable(Path)}.
+   * 
+   * @param path The path to the beer data file.
+   * @param diagnostics Collects the bad records, or null to throw an
+   *        exception at the first one.
+   * @return The table of craft beers in file order.
+   */
+  public BeerTable parseBeerTable(Path path,
+      ParseDiagnostics diagnostics) {
+    try {
+      BeerTable.Builder table = newTableBuilder();
+
+      openBeerSource(path).read(table::add, diagnostics);
+
+      return table.build();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Load the beer data file into a column-oriented
+   * table, using a snapshot if possible. See
+   * {@link #loadBeerTable(Path)}.
+   * 
+   * @return The table of craft beers.
+   */
+  public BeerTable loadBeerTable() {
+    return loadBeerTable(beerFilePath());
+  }
+
+  /**
+   * Load the given beer data file into a column-oriented table. If the
+   * craft.beer.snapshot.file property is set and the snapshot file was
+   * made from this version of the beer data file in the same parse mode
+   * (see craft.beer.parser.lenient), the table is loaded from the
+   * snapshot. Otherwise the beer data file is parsed and a new
+   * snapshot is written so that the next load is fast. A snapshot that
+   * cannot be read, such as a truncated one, is logged and replaced
+   * the same way.
+   * 
+   * @param path The path to the beer data file.
+   * @return The table of craft beers in file order.
+   */
+  public BeerTable loadBeerTable(Path path) {
+    if(snapshotFile == null || snapshotFile.isBlank()) {
+      return parseBeerTable(path);
+    }
+
+    try {
+      Path snapshot = Paths.get(snapshotFile);
+      long checksum = BeerSnapshot.checksum(path);
+      long start = System.nanoTime();
+      BeerTable table = readSnapshot(snapshot, checksum);
+
+      if(table != null) {
+        log.info("Loaded {} beers from snapshot {} in {} ms",
+            table.size(), snapshot, elapsedMillis(start));
+        return table;
+      }
+
+      table = parseBeerTable(path);
+      log.info("Parsed {} beers from {} in {} ms", table.size(), path,
+          elapsedMillis(start));
+
+      BeerSnapshot.write(table, checksum, lenient, snapshot);
+
+      return table;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Read the table from a snapshot. A snapshot is only a cache, so any
+   * failure to read it is logged and null is returned, which makes the
+   * caller parse the beer data file and write a new snapshot.
+   * 
+   * @param snapshot The path to the snapshot file.
+   * @param checksum The checksum of the beer data file.
+   * @return The table, or null if the snapshot cannot be used.
+   */
+  private BeerTable readSnapshot(Path snapshot, long checksum) {
+    try {
+      return BeerSnapshot.read(snapshot, checksum, lenient,
+          new SymbolTable(), new SymbolTable(), prior());
+    }
+    catch (IOException | RuntimeException e) {
+      log.warn("Ignoring snapshot {} that cannot be read: {}", snapshot,
+          e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Parse beer data that has already been read into memory, one entry
+   * per line of the beer data file. The raw lines are concatenated
+   * into single-line records and each record is parsed into a Beer.
+   * Any partial record at the end of the list is ignored.
+   * 
+   * @param rawlines The raw data straight from the data file. This list
+   *        is not modified.
+   * @return The list of craft beers in file order.
+   */
+  public List<Beer> parseBeerLines(List<String> rawlines) {
     List<String> lines = concatenateLines(rawlines);
 
     return parseLines(lines);
   }
 
   /**
-   * Convert the 3 beer data lines into a single line.
+   * Convert the 3 beer data lines into a single line. This walks the
+   * raw lines by index instead of removing them from the front of the
+   * list, so the time taken is linear in the number of lines.
    * 
    * @param rawlines The raw data straight from the data file.
    * @return The concatenated lines.
    */
-  private List<String> concatenateLines(List<String> rawlines) {
-    List<String> lines = new LinkedList<>();
+  List<String> concatenateLines(List<String> rawlines) {
+    int numRecords = rawlines.size() / 3;
+    List<String> lines = new ArrayList<>(numRecords);
+    StringBuilder line = new StringBuilder();
 
-    while (rawlines.size() >= 3) {
-      String line = rawlines.remove(0) + " | " + rawlines.remove(0)
-          + " | " + rawlines.remove(0);
+    for(int pos = 0; pos < numRecords * 3; pos += 3) {
+      line.setLength(0);
+      line.append(rawlines.get(pos)).append(" | ")
+          .append(rawlines.get(pos + 1)).append(" | ")
+          .append(rawlines.get(pos + 2));
 
-      lines.add(line);
+      lines.add(line.toString());
     }
 
     return lines;
@@ -82,8 +487,8 @@ public class CraftBeerService {
    * @param lines The beer data.
    * @return A list of Beer objects.
    */
-  private List<Beer> parseLines(List<String> lines) {
-    List<Beer> beers = new LinkedList<>();
+  List<Beer> parseLines(List<String> lines) {
+    List<Beer> beers = new ArrayList<>(lines.size());
 
     /*
      * Create a single StringBuilder object that is emptied and filled
@@ -110,20 +515,19 @@ public class CraftBeerService {
    * @param beerBuilder
    * @return
    */
-  private Beer parseLine(StringBuilder beerBuilder) {
+  Beer parseLine(StringBuilder beerBuilder) {
     int ordinal = Integer.parseInt(parseToken(beerBuilder, " "));
     String name = parseToken(beerBuilder, "|");
-    String brewery = parseToken(beerBuilder, "|");
-    String type = parseToken(beerBuilder, "|");
-    BigDecimal abv =
-        new BigDecimal(parseToken(beerBuilder, "%")).setScale(2);
+    String brewery = breweries.intern(parseToken(beerBuilder, "|"));
+    String type = types.intern(parseToken(beerBuilder, "|"));
+    int abv = Beer.parseHundredths(parseToken(beerBuilder, "%"));
     int numReviewers = removeComma(parseToken(beerBuilder, " "));
-    BigDecimal avg = new BigDecimal(beerBuilder.toString());
+    int avg = Beer.parseHundredths(beerBuilder);
 
     // @formatter:off
     return Beer.builder()
-        .abv(abv)
-        .averageRating(avg)
+        .abvHundredths(abv)
+        .averageRatingHundredths(avg)
         .brewery(brewery)
         .ordinal(ordinal)
         .name(name)
@@ -143,8 +547,7 @@ public class CraftBeerService {
    * @param separator The separator to search for.
    * @return The token.
    */
-  private String parseToken(StringBuilder beerBuilder,
-      String separator) {
+  String parseToken(StringBuilder beerBuilder, String separator) {
     int pos = beerBuilder.indexOf(separator);
 
     if(pos == -1) {
@@ -164,7 +567,7 @@ public class CraftBeerService {
    * 
    * @param beerBuilder The StringBuilder to trim.
    */
-  private void trim(StringBuilder beerBuilder) {
+  void trim(StringBuilder beerBuilder) {
     while (beerBuilder.charAt(0) == ' ') {
       beerBuilder.deleteCharAt(0);
     }
@@ -180,7 +583,7 @@ public class CraftBeerService {
    * @param num The String to fix.
    * @return The String converted to an int.
    */
-  private int removeComma(String num) {
+  int removeComma(String num) {
     String value = "";
 
     for(int i = 0; i < num.length(); i++) {
@@ -195,19 +598,100 @@ public class CraftBeerService {
   }
 
   /**
-   * Load the beer data.
+   * Create the prior from the craft.beer.score properties.
+   */
+  private BayesianPrior prior() {
+    return new BayesianPrior(Beer.toHundredths(priorRating),
+        priorWeight);
+  }
+
+  private long elapsedMillis(long startNanos) {
+    return (System.nanoTime() - startNanos) / 1_000_000;
+  }
+
+  /**
+   * Return the path to the beer data file that is parsed by the methods
+   * that take no path. This is the craft.beer.data.file property if it
+   * is set, or else the beer-data.txt file on the classpath.
+   * 
+   * @return The path to the beer data file.
+   */
+  public Path getBeerFilePath() {
+    return beerFilePath();
+  }
+
+  /**
+   * Find the beer data file, in the classpath if no file is configured.
    * 
-   * @return The beer data as a List of String.
+   * @return The path to the beer data file.
    */
-  private List<String> loadBeerFile() {
+  private Path beerFilePath() {
+    if(dataFile != null && !dataFile.isBlank()) {
+      return Paths.get(dataFile);
+    }
+
     try {
       Resource resource = new ClassPathResource(FILE_NAME);
-      Path path = Paths.get(resource.getURI());
 
-      return Files.readAllLines(path);
+      return Paths.get(resource.getURI());
     }
     catch (IOException e) {
       throw new UncheckedIOException(e);
     }
   }
+
+  /**
+   * Close the reader, converting any exception to an unchecked
+   * exception so that this can be used as a stream close handler.
+   * 
+   * @param reader The reader to close.
+   */
+  private void close(BufferedReader reader) {
+    try {
+      reader.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * This spliterator reads a single record (3 lines) from the beer data
+   * file each time a Beer is requested. The lines are concatenated into
+   * a single StringBuilder that is reused for every record, so memory
+   * use does not grow with the size of the file.
+   */
+  private class BeerRecordSpliterator
+      extends Spliterators.AbstractSpliterator<Beer> {
+    private final BufferedReader reader;
+    private final StringBuilder beer = new StringBuilder();
+
+    BeerRecordSpliterator(BufferedReader reader) {
+      super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+      this.reader = reader;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Beer> action) {
+      try {
+        String first = reader.readLine();
+        String second = reader.readLine();
+        String third = reader.readLine();
+
+        if(first == null || second == null || third == null) {
+          return false;
+        }
+
+        beer.setLength(0);
+        beer.append(first).append(" | ").append(second).append(" | ")
+            .append(third);
+
+        action.accept(parseLine(beer));
+        return true;
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
 }
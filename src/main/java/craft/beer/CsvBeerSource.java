@@ -0,0 +1,229 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Reads beer data in CSV format as described by RFC 4180. Fields are
+ * separated by commas and records by CR LF or LF. A field in double
+ * quotes may hold commas, line breaks and doubled quotes.
+ *
+ * If the first record is a header, which is detected by its first
+ * field not being a number, the columns are found by name (see
+ * {@link BeerSource.Format#CSV}). Names are matched ignoring case and
+ * other columns are ignored. Without a header the columns must be in
+ * the default order. Blank lines are skipped. A missing column in the
+ * header is an error even in lenient mode.
+ *
+ * Each record is read into one reused byte array, with the start and
+ * end of each field kept in reused int arrays.
+ *
+ * @author Promineo
+ *
+ */
+class CsvBeerSource extends ByteBeerSource {
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private int numFields;
+
+  CsvBeerSource(Path path, SymbolTable breweries, SymbolTable types) {
+    super(path, breweries, types);
+  }
+
+  @Override
+  void readRecords(Consumer<? super Beer> consumer) throws IOException {
+    int[] columns = {ORDINAL, NAME, BREWERY, TYPE, ABV, NUM_RATINGS,
+        AVERAGE_RATING};
+    boolean first = true;
+
+    while (true) {
+      try {
+        if(!readRecord()) {
+          return;
+        }
+      }
+      catch (BadRecordException e) {
+        skip(e);
+        skipLine();
+        continue;
+      }
+
+      if(numFields == 1 && starts[0] == ends[0]) {
+        continue;
+      }
+
+      if(first) {
+        first = false;
+
+        if(!isNumber(starts[0], ends[0])) {
+          columns = header();
+          continue;
+        }
+      }
+
+      Beer beer;
+
+      try {
+        beer = beer(columns);
+      }
+      catch (BadRecordException e) {
+        skip(e);
+        continue;
+      }
+
+      consumer.accept(beer);
+    }
+  }
+
+  /**
+   * Read the next record into the field bytes.
+   *
+   * @return False at the end of the file.
+   */
+  private boolean readRecord() throws IOException {
+    startRecord();
+
+    int ch = next();
+
+    if(ch == -1) {
+      return false;
+    }
+
+    fieldLength = 0;
+    numFields = 0;
+
+    while (true) {
+      int start = fieldLength;
+
+      if(ch == '"') {
+        while (true) {
+          ch = next();
+
+          if(ch == -1) {
+            throw error("Unterminated quoted field");
+          }
+
+          if(ch == '"') {
+            if(peek() != '"') {
+              break;
+            }
+
+            next();
+          }
+
+          append(ch);
+        }
+
+        ch = next();
+
+        if(ch != ',' && ch != '\r' && ch != '\n' && ch != -1) {
+          throw error("Comma expected after a quoted field");
+        }
+      }
+      else {
+        while (ch != ',' && ch != '\r' && ch != '\n' && ch != -1) {
+          append(ch);
+          ch = next();
+        }
+      }
+
+      addField(start, fieldLength);
+
+      if(ch == ',') {
+        ch = next();
+        continue;
+      }
+
+      if(ch == '\r' && peek() == '\n') {
+        next();
+      }
+
+      return true;
+    }
+  }
+
+  private void addField(int start, int end) {
+    if(numFields == starts.length) {
+      starts = Arrays.copyOf(starts, numFields * 2);
+      ends = Arrays.copyOf(ends, numFields * 2);
+    }
+
+    starts[numFields] = start;
+    ends[numFields++] = end;
+  }
+
+  /**
+   * Find the column of each Beer field from the header record.
+   */
+  private int[] header() {
+    int[] columns = new int[FIELD_NAMES.length];
+
+    Arrays.fill(columns, -1);
+
+    for(int column = 0; column < numFields; column++) {
+      String name = string(starts[column], ends[column]).trim();
+
+      for(int index = 0; index < FIELD_NAMES.length; index++) {
+        if(FIELD_NAMES[index].equalsIgnoreCase(name)) {
+          columns[index] = column;
+        }
+      }
+    }
+
+    for(int index = 0; index < columns.length; index++) {
+      if(columns[index] == -1) {
+        throw error("Missing column " + FIELD_NAMES[index]);
+      }
+    }
+
+    return columns;
+  }
+
+  private boolean isNumber(int from, int to) {
+    boolean digitFound = false;
+
+    for(int index = from; index < to; index++) {
+      if(field[index] >= '0' && field[index] <= '9') {
+        digitFound = true;
+      }
+      else if(field[index] != ' ') {
+        return false;
+      }
+    }
+
+    return digitFound;
+  }
+
+  private Beer beer(int[] columns) {
+    for(int column : columns) {
+      if(column >= numFields) {
+        throw error("Expected at least " + (column + 1)
+            + " fields but found " + numFields);
+      }
+    }
+
+    int ordinal = columns[ORDINAL];
+    int name = columns[NAME];
+    int brewery = columns[BREWERY];
+    int type = columns[TYPE];
+    int abv = columns[ABV];
+    int numRatings = columns[NUM_RATINGS];
+    int rating = columns[AVERAGE_RATING];
+
+    // @formatter:off
+    return Beer.builder()
+        .abvHundredths(parseHundredths(starts[abv], ends[abv], ABV))
+        .averageRatingHundredths(parseHundredths(starts[rating],
+            ends[rating], AVERAGE_RATING))
+        .brewery(brewery(starts[brewery], ends[brewery]))
+        .ordinal(parseInt(starts[ordinal], ends[ordinal], ORDINAL))
+        .name(string(starts[name], ends[name]))
+        .numRatings(parseInt(starts[numRatings], ends[numRatings],
+            NUM_RATINGS))
+        .type(type(starts[type], ends[type]))
+        .build();
+    // @formatter:on
+  }
+}
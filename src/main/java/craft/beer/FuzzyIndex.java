@@ -0,0 +1,397 @@
+package craft.beer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class finds the values of a String column that are within a
+ * small edit distance of a query, such as "Heady Toper" for "Heady
+ * Topper". Comparing the query with every value would be far too slow
+ * for a large catalog, so the index holds, for every trigram (run of
+ * three characters), the entries whose value contains it.
+ *
+ * A value that is within k edits of the query shares all but at most
+ * 3k of the query's distinct trigrams, because each edit changes at
+ * most three trigrams. So a match must contain at least one of the 3k
+ * + 1 rarest trigrams of the query. Those postings supply the
+ * candidates, the other trigrams count how many each candidate shares,
+ * and only the candidates that share enough are compared with the
+ * query using a bounded edit distance.
+ *
+ * A match also has a length within k of the query's length. Entries
+ * are numbered in order of length, so the postings of each trigram are
+ * sorted by length too, and only the part of each list with the right
+ * lengths is read.
+ *
+ * Matching ignores case. A FuzzyIndex is immutable.
+ *
+ * @author Promineo
+ *
+ */
+class FuzzyIndex {
+  /* Marks the start and end of a value so its ends form trigrams. */
+  private static final char BOUNDARY = '\u0001';
+
+  private final String[] values;
+  private final Map<Long, Integer> gramIds;
+
+  /*
+   * Entries are numbered internally in order of length: entry
+   * order[id] has internal number id, and the internal numbers of the
+   * entries of length n start at lengthStart[n].
+   */
+  private final int[] order;
+  private final int[] lengthStart;
+
+  /*
+   * The entries holding trigram g are entries[offsets[g]] up to, but
+   * not including, entries[offsets[g + 1]], as internal numbers in
+   * ascending order.
+   */
+  private final int[] offsets;
+  private final int[] entries;
+
+  /**
+   * Build an index over a String column. The column is read twice: once
+   * to count the entries for each trigram and once to fill them in.
+   *
+   * @param values The value of each entry. The array is not copied, so
+   *        it must not be changed.
+   */
+  FuzzyIndex(String[] values) {
+    this.values = values;
+    this.gramIds = new HashMap<>();
+
+    int maxLength = 0;
+
+    for(String value : values) {
+      maxLength = Math.max(maxLength, value.length());
+    }
+
+    lengthStart = new int[maxLength + 2];
+
+    for(String value : values) {
+      lengthStart[value.length() + 1]++;
+    }
+
+    for(int length = 0; length <= maxLength; length++) {
+      lengthStart[length + 1] += lengthStart[length];
+    }
+
+    order = new int[values.length];
+
+    int[] nextId = Arrays.copyOf(lengthStart, maxLength + 1);
+
+    for(int entry = 0; entry < values.length; entry++) {
+      order[nextId[values[entry].length()]++] = entry;
+    }
+
+    int[] counts = new int[1024];
+    long[] grams = new long[64];
+
+    for(String value : values) {
+      if(grams.length < value.length()) {
+        grams = new long[value.length() * 2];
+      }
+
+      int numGrams = distinctGrams(value, grams);
+
+      for(int index = 0; index < numGrams; index++) {
+        Integer id = gramIds.get(grams[index]);
+
+        if(id == null) {
+          id = gramIds.size();
+          gramIds.put(grams[index], id);
+
+          if(id == counts.length) {
+            counts = Arrays.copyOf(counts, id * 2);
+          }
+        }
+
+        counts[id]++;
+      }
+    }
+
+    offsets = new int[gramIds.size() + 1];
+
+    for(int id = 0; id < gramIds.size(); id++) {
+      offsets[id + 1] = offsets[id] + counts[id];
+    }
+
+    entries = new int[offsets[gramIds.size()]];
+
+    int[] next = Arrays.copyOf(offsets, gramIds.size());
+
+    for(int id = 0; id < order.length; id++) {
+      String value = values[order[id]];
+
+      if(grams.length < value.length()) {
+        grams = new long[value.length() * 2];
+      }
+
+      int numGrams = distinctGrams(value, grams);
+
+      for(int index = 0; index < numGrams; index++) {
+        entries[next[gramIds.get(grams[index])]++] = id;
+      }
+    }
+  }
+
+  /**
+   * Find the entries whose values are within the given edit distance of
+   * the query.
+   *
+   * @param query The value to look for.
+   * @param maxDistance The most single character insertions, deletions
+   *        and substitutions allowed.
+   * @return One match per entry, as the edit distance in the high 32
+   *         bits and the entry in the low 32 bits, sorted by distance
+   *         and then by entry.
+   */
+  long[] find(String query, int maxDistance) {
+    if(maxDistance < 0) {
+      throw new IllegalArgumentException(
+          "Edit distance must not be negative: " + maxDistance);
+    }
+
+    char[] chars = query.toCharArray();
+
+    for(int index = 0; index < chars.length; index++) {
+      chars[index] = Character.toLowerCase(chars[index]);
+    }
+
+    String lower = new String(chars);
+    long[] grams = new long[lower.length()];
+    int numGrams = distinctGrams(lower, grams);
+    int required = numGrams - 3 * maxDistance;
+
+    /* The internal numbers of the entries with a suitable length. */
+    int maxLength = lengthStart.length - 2;
+    int minId = lengthStart[Math.min(
+        Math.max(lower.length() - maxDistance, 0), maxLength + 1)];
+    int maxId = lengthStart[Math.min(
+        lower.length() + maxDistance + 1, maxLength + 1)];
+    int[] candidates;
+
+    if(required <= 0) {
+      /* The query is too short for trigrams to rule anything out. */
+      candidates = new int[Math.max(maxId - minId, 0)];
+      Arrays.setAll(candidates, index -> minId + index);
+    }
+    else {
+      candidates = candidates(grams, numGrams, required, minId, maxId);
+    }
+
+    long[] matches = new long[Math.min(candidates.length, 64)];
+    int numMatches = 0;
+
+    for(int id : candidates) {
+      int entry = order[id];
+      String value = values[entry];
+      int distance = distance(lower, value, maxDistance);
+
+      if(distance <= maxDistance) {
+        if(numMatches == matches.length) {
+          matches = Arrays.copyOf(matches, numMatches * 2);
+        }
+
+        matches[numMatches++] = (long) distance << 32 | entry;
+      }
+    }
+
+    matches = Arrays.copyOf(matches, numMatches);
+    Arrays.sort(matches);
+
+    return matches;
+  }
+
+  /**
+   * Return the entries that share at least the required number of the
+   * query's trigrams.
+   */
+  private int[] candidates(long[] grams, int numGrams, int required,
+      int minId, int maxId) {
+    /*
+     * The postings of the query's trigrams for entries from minId up to
+     * maxId, rarest first, as ranges of the entries array. The ranges
+     * are searched in place rather than copied, because a common
+     * trigram can have a very long list.
+     */
+    long[] bySize = new long[numGrams];
+
+    for(int index = 0; index < numGrams; index++) {
+      Integer gramId = gramIds.get(grams[index]);
+      int start = 0;
+      int end = 0;
+
+      if(gramId != null) {
+        start = position(offsets[gramId], offsets[gramId + 1], minId);
+        end = position(start, offsets[gramId + 1], maxId);
+      }
+
+      bySize[index] = (long) (end - start) << 32 | start;
+    }
+
+    Arrays.sort(bySize);
+
+    int[] from = new int[numGrams];
+    int[] to = new int[numGrams];
+
+    for(int index = 0; index < numGrams; index++) {
+      from[index] = (int) bySize[index];
+      to[index] = from[index] + (int) (bySize[index] >>> 32);
+    }
+
+    /* Every candidate holds at least one of the rarest trigrams. */
+    int rarest = numGrams - required + 1;
+    int total = 0;
+
+    for(int index = 0; index < rarest; index++) {
+      total += to[index] - from[index];
+    }
+
+    int[] all = new int[total];
+    int pos = 0;
+
+    for(int index = 0; index < rarest; index++) {
+      System.arraycopy(entries, from[index], all, pos,
+          to[index] - from[index]);
+      pos += to[index] - from[index];
+    }
+
+    Arrays.sort(all);
+
+    int[] candidates = new int[all.length];
+    int numCandidates = 0;
+
+    for(int start = 0; start < all.length;) {
+      int end = start;
+
+      while (end < all.length && all[end] == all[start]) {
+        end++;
+      }
+
+      int shared = end - start;
+
+      for(int index = rarest; index < numGrams
+          && shared + numGrams - index >= required; index++) {
+        if(Arrays.binarySearch(entries, from[index], to[index],
+            all[start]) >= 0) {
+          shared++;
+        }
+      }
+
+      if(shared >= required) {
+        candidates[numCandidates++] = all[start];
+      }
+
+      start = end;
+    }
+
+    return Arrays.copyOf(candidates, numCandidates);
+  }
+
+  /**
+   * Return the position of the first internal number in the range of
+   * the entries array that is not less than the given one.
+   */
+  private int position(int start, int end, int id) {
+    int found = Arrays.binarySearch(entries, start, end, id);
+
+    return found >= 0 ? found : -found - 1;
+  }
+
+  /**
+   * Calculate the Levenshtein distance between a lower case query and a
+   * value, giving up once it must be more than the maximum. Only the
+   * cells within maxDistance of the diagonal are calculated, because
+   * any path through the other cells costs more than the maximum.
+   *
+   * @return The distance, or maxDistance + 1 if it is larger than
+   *         maxDistance.
+   */
+  static int distance(String query, String value, int maxDistance) {
+    int over = maxDistance + 1;
+    int[] previous = new int[value.length() + 1];
+    int[] current = new int[value.length() + 1];
+
+    for(int j = 0; j <= value.length(); j++) {
+      previous[j] = Math.min(j, over);
+    }
+
+    for(int i = 1; i <= query.length(); i++) {
+      char ch = query.charAt(i - 1);
+      int from = Math.max(1, i - maxDistance);
+      int to = Math.min(value.length(), i + maxDistance);
+      current[from - 1] = from == 1 ? Math.min(i, over) : over;
+
+      int best = current[from - 1];
+
+      for(int j = from; j <= to; j++) {
+        int cost =
+            Character.toLowerCase(value.charAt(j - 1)) == ch ? 0 : 1;
+
+        current[j] = Math.min(over, Math.min(previous[j - 1] + cost,
+            Math.min(previous[j], current[j - 1]) + 1));
+        best = Math.min(best, current[j]);
+      }
+
+      if(to < value.length()) {
+        current[to + 1] = over;
+      }
+
+      if(best > maxDistance) {
+        return over;
+      }
+
+      int[] swap = previous;
+
+      previous = current;
+      current = swap;
+    }
+
+    return Math.min(previous[value.length()], over);
+  }
+
+  /**
+   * Put the distinct trigrams of a value, with a boundary character at
+   * each end, into the array. The array must be at least as long as the
+   * value.
+   *
+   * @return The number of distinct trigrams.
+   */
+  private static int distinctGrams(String value, long[] grams) {
+    int length = value.length();
+
+    if(length == 0) {
+      return 0;
+    }
+
+    for(int index = 0; index < length; index++) {
+      char first =
+          index == 0 ? BOUNDARY : lower(value, index - 1);
+      char last =
+          index == length - 1 ? BOUNDARY : lower(value, index + 1);
+
+      grams[index] =
+          (long) first << 32 | (long) lower(value, index) << 16 | last;
+    }
+
+    Arrays.sort(grams, 0, length);
+
+    int numGrams = 1;
+
+    for(int index = 1; index < length; index++) {
+      if(grams[index] != grams[numGrams - 1]) {
+        grams[numGrams++] = grams[index];
+      }
+    }
+
+    return numGrams;
+  }
+
+  private static char lower(String value, int index) {
+    return Character.toLowerCase(value.charAt(index));
+  }
+}
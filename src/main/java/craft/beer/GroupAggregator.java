@@ -0,0 +1,294 @@
+package craft.beer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class calculates {@link BeerGroupStats} for every group of a
+ * dictionary coded column of a {@link BeerTable}, such as the brewery
+ * or beer type. The group code of each row is an index into arrays of
+ * primitive accumulators, so a row is added without creating any
+ * objects or looking anything up in a map.
+ *
+ * Large tables are aggregated in parallel. The rows are split into
+ * chunks, each chunk is added to its own partial aggregator on the
+ * common fork/join pool, and the partial aggregators are merged. Every
+ * statistic is a sum, a count or a maximum, so merging gives exactly
+ * the same result as a single pass.
+ *
+ * @author Promineo
+ *
+ */
+class GroupAggregator {
+  /* Tables smaller than this are aggregated on the calling thread. */
+  private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+  /*
+   * Create more chunks than threads so that a slow chunk does not keep
+   * the other threads waiting.
+   */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final int[] counts;
+  private final long[] abvSums;
+  private final long[] ratingSums;
+  private final long[] weightedRatingSums;
+  private final long[] numRatingsSums;
+  private final int[] maxRatings;
+
+  /**
+   * Create an empty aggregator.
+   *
+   * @param numGroups The number of distinct group codes.
+   */
+  GroupAggregator(int numGroups) {
+    counts = new int[numGroups];
+    abvSums = new long[numGroups];
+    ratingSums = new long[numGroups];
+    weightedRatingSums = new long[numGroups];
+    numRatingsSums = new long[numGroups];
+    maxRatings = new int[numGroups];
+  }
+
+  /**
+   * Aggregate the rows of a table by a coded column.
+   *
+   * @param table The table.
+   * @param groups The group code of each row, such as
+   *        {@link BeerTable#breweryCodeColumn()}.
+   * @param numGroups The number of distinct group codes.
+   * @param rows The rows to aggregate in ascending order, or null to
+   *        aggregate every row.
+   * @return The aggregator holding the totals.
+   */
+  static GroupAggregator aggregate(BeerTable table, int[] groups,
+      int numGroups, int[] rows) {
+    int size = rows == null ? table.size() : rows.length;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int chunkSize =
+        Math.max(MIN_CHUNK_SIZE, size / (threads * CHUNKS_PER_THREAD));
+
+    return new AggregateTask(table, groups, numGroups, rows, 0, size,
+        chunkSize).invoke();
+  }
+
+  /**
+   * Add one beer to its group.
+   *
+   * @param group The group code.
+   * @param abv The ABV in hundredths.
+   * @param rating The average rating in hundredths.
+   * @param numRatings The number of ratings.
+   */
+  void add(int group, int abv, int rating, int numRatings) {
+    counts[group]++;
+    abvSums[group] += abv;
+    ratingSums[group] += rating;
+    weightedRatingSums[group] += (long) rating * numRatings;
+    numRatingsSums[group] += numRatings;
+    maxRatings[group] = Math.max(maxRatings[group], rating);
+  }
+
+  /**
+   * Add the totals of another aggregator over the same groups, or the
+   * first of them, to this one.
+   *
+   * @param other The other aggregator.
+   * @return This aggregator.
+   */
+  GroupAggregator merge(GroupAggregator other) {
+    for(int group = 0; group < other.counts.length; group++) {
+      counts[group] += other.counts[group];
+      abvSums[group] += other.abvSums[group];
+      ratingSums[group] += other.ratingSums[group];
+      weightedRatingSums[group] += other.weightedRatingSums[group];
+      numRatingsSums[group] += other.numRatingsSums[group];
+      maxRatings[group] =
+          Math.max(maxRatings[group], other.maxRatings[group]);
+    }
+
+    return this;
+  }
+
+  /**
+   * Create an aggregator after some rows were taken out and some put
+   * in. A changed row is in both lists. The old values of each removed
+   * row are subtracted from its group and the new values of each added
+   * row are added, so only those rows are read. A maximum cannot be
+   * subtracted, so a group that lost its highest rated beer, and did
+   * not gain one rated as high, has its maximum found again from the
+   * rows of that group.
+   *
+   * @param groups The group code of each row. The group of a row must
+   *        not change while it is in the aggregator.
+   * @param numGroups The number of distinct group codes, which may have
+   *        grown.
+   * @param removedRows The rows to take out.
+   * @param addedRows The rows to put in.
+   * @param oldTable The table before the change.
+   * @param newTable The table after the change.
+   * @param groupRows The rows of each group after the change.
+   * @return The new aggregator, or this aggregator if nothing changed.
+   *         This aggregator is not changed.
+   */
+  GroupAggregator update(int[] groups, int numGroups, int[] removedRows,
+      int[] addedRows, BeerTable oldTable, BeerTable newTable,
+      BitmapIndex groupRows) {
+    if(removedRows.length == 0 && addedRows.length == 0
+        && numGroups <= counts.length) {
+      return this;
+    }
+
+    GroupAggregator updated =
+        new GroupAggregator(Math.max(numGroups, counts.length));
+    int[] oldAbv = oldTable.abvColumn();
+    int[] oldRating = oldTable.averageRatingColumn();
+    int[] oldNumRatings = oldTable.numRatingsColumn();
+    int[] newAbv = newTable.abvColumn();
+    int[] newRating = newTable.averageRatingColumn();
+    int[] newNumRatings = newTable.numRatingsColumn();
+    boolean[] staleMax = new boolean[updated.counts.length];
+
+    updated.merge(this);
+
+    for(int row : removedRows) {
+      int group = groups[row];
+
+      updated.counts[group]--;
+      updated.abvSums[group] -= oldAbv[row];
+      updated.ratingSums[group] -= oldRating[row];
+      updated.weightedRatingSums[group] -=
+          (long) oldRating[row] * oldNumRatings[row];
+      updated.numRatingsSums[group] -= oldNumRatings[row];
+
+      if(oldRating[row] == maxRatings[group]) {
+        staleMax[group] = true;
+      }
+    }
+
+    for(int row : addedRows) {
+      int group = groups[row];
+
+      updated.add(group, newAbv[row], newRating[row],
+          newNumRatings[row]);
+
+      if(group < maxRatings.length
+          && newRating[row] >= maxRatings[group]) {
+        staleMax[group] = false;
+      }
+    }
+
+    for(int group = 0; group < staleMax.length; group++) {
+      if(staleMax[group]) {
+        int max = 0;
+
+        for(int row : groupRows.rows(group).toArray()) {
+          max = Math.max(max, newRating[row]);
+        }
+
+        updated.maxRatings[group] = max;
+      }
+    }
+
+    return updated;
+  }
+
+  /**
+   * Return the statistics of every group that has at least one beer.
+   *
+   * @param dictionary The value of each group code.
+   * @return The statistics in group code order.
+   */
+  List<BeerGroupStats> toStats(String[] dictionary) {
+    List<BeerGroupStats> stats = new ArrayList<>();
+
+    for(int group = 0; group < counts.length; group++) {
+      int count = counts[group];
+
+      if(count == 0) {
+        continue;
+      }
+
+      /*
+       * A group whose beers have no ratings at all falls back to the
+       * plain average of the average ratings.
+       */
+      long numRatings = numRatingsSums[group];
+      long weighted = numRatings == 0 ? Math.round(
+          (double) ratingSums[group] / count)
+          : Math.round((double) weightedRatingSums[group] / numRatings);
+
+      // @formatter:off
+      stats.add(BeerGroupStats.builder()
+          .count(count)
+          .group(dictionary[group])
+          .maxAverageRatingHundredths(maxRatings[group])
+          .meanAbvHundredths(
+              (int) Math.round((double) abvSums[group] / count))
+          .numRatings(numRatings)
+          .weightedAverageRatingHundredths((int) weighted)
+          .build());
+      // @formatter:on
+    }
+
+    return stats;
+  }
+
+  /**
+   * Aggregates a range of rows, splitting it in half until the pieces
+   * are no larger than the chunk size, and merges the results.
+   */
+  @SuppressWarnings("serial")
+  private static class AggregateTask
+      extends RecursiveTask<GroupAggregator> {
+    private final BeerTable table;
+    private final int[] groups;
+    private final int numGroups;
+    private final int[] rows;
+    private final int from;
+    private final int to;
+    private final int chunkSize;
+
+    AggregateTask(BeerTable table, int[] groups, int numGroups,
+        int[] rows, int from, int to, int chunkSize) {
+      this.table = table;
+      this.groups = groups;
+      this.numGroups = numGroups;
+      this.rows = rows;
+      this.from = from;
+      this.to = to;
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected GroupAggregator compute() {
+      if(to - from > chunkSize) {
+        int middle = (from + to) >>> 1;
+        AggregateTask left = new AggregateTask(table, groups, numGroups,
+            rows, from, middle, chunkSize);
+        AggregateTask right = new AggregateTask(table, groups,
+            numGroups, rows, middle, to, chunkSize);
+
+        left.fork();
+
+        GroupAggregator result = right.compute();
+
+        return result.merge(left.join());
+      }
+
+      GroupAggregator result = new GroupAggregator(numGroups);
+      int[] abv = table.abvColumn();
+      int[] rating = table.averageRatingColumn();
+      int[] numRatings = table.numRatingsColumn();
+
+      for(int index = from; index < to; index++) {
+        int row = rows == null ? index : rows[index];
+
+        result.add(groups[row], abv[row], rating[row], numRatings[row]);
+      }
+
+      return result;
+    }
+  }
+}
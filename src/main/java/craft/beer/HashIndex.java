@@ -0,0 +1,205 @@
+package craft.beer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class indexes the rows of a {@link BeerTable} by a dictionary
+ * coded column such as the brewery or beer type. A hash map finds the
+ * code for a key and the row ids for each code are held in a single
+ * int array, grouped by code and in row order within each code. Looking
+ * up a key takes time in proportion to the number of rows found, not
+ * the number of rows in the table.
+ *
+ * A HashIndex is immutable.
+ *
+ * @author Promineo
+ *
+ */
+class HashIndex {
+  private static final int[] NO_ROWS = {};
+
+  private final Map<String, Integer> codes;
+
+  /*
+   * The rows for code c are rowIds[offsets[c]] up to, but not
+   * including, rowIds[offsets[c + 1]].
+   */
+  private final int[] offsets;
+  private final int[] rowIds;
+
+  /**
+   * Build an index over a coded column. This is a counting sort of the
+   * row ids by code, so it takes linear time.
+   *
+   * @param dictionary The value of each code.
+   * @param column The code of each row.
+   */
+  HashIndex(String[] dictionary, int[] column) {
+    codes = new HashMap<>(dictionary.length * 2);
+    offsets = new int[dictionary.length + 1];
+    rowIds = new int[column.length];
+
+    for(int code = 0; code < dictionary.length; code++) {
+      codes.put(dictionary[code], code);
+    }
+
+    for(int code : column) {
+      offsets[code + 1]++;
+    }
+
+    for(int code = 0; code < dictionary.length; code++) {
+      offsets[code + 1] += offsets[code];
+    }
+
+    int[] next = Arrays.copyOf(offsets, dictionary.length);
+
+    for(int row = 0; row < column.length; row++) {
+      rowIds[next[column[row]]++] = row;
+    }
+  }
+
+  private HashIndex(Map<String, Integer> codes, int[] offsets,
+      int[] rowIds) {
+    this.codes = codes;
+    this.offsets = offsets;
+    this.rowIds = rowIds;
+  }
+
+  /**
+   * Create an index for the same column with some rows taken out and
+   * some appended. The code of a row does not change while it is in the
+   * index. Each removed row is found by a binary search within the rows
+   * of its code, and the runs of rows between them are copied in bulk.
+   * The hash map is only copied if the dictionary has grown.
+   *
+   * @param removedRows The rows to take out.
+   * @param addedRows The rows to put in. They must come after every
+   *        row in this index, in ascending order.
+   * @param dictionary The value of each code, which may have values
+   *        that this index does not have yet.
+   * @param column The code of each row.
+   * @return The new index. This index is not changed.
+   */
+  HashIndex update(int[] removedRows, int[] addedRows,
+      String[] dictionary, int[] column) {
+    int oldNumCodes = offsets.length - 1;
+    int numCodes = Math.max(dictionary.length, oldNumCodes);
+    Map<String, Integer> newCodes = codes;
+
+    if(numCodes > oldNumCodes) {
+      newCodes = new HashMap<>(codes);
+
+      for(int code = oldNumCodes; code < numCodes; code++) {
+        newCodes.put(dictionary[code], code);
+      }
+    }
+
+    long[] removed = byCode(removedRows, column);
+    long[] added = byCode(addedRows, column);
+    int[] newOffsets = new int[numCodes + 1];
+    int[] newRowIds =
+        new int[rowIds.length - removed.length + added.length];
+    int src = 0;
+    int dst = 0;
+    int nextRemoved = 0;
+    int nextAdded = 0;
+
+    for(int code = 0; code < numCodes; code++) {
+      int end = code < oldNumCodes ? offsets[code + 1] : rowIds.length;
+
+      newOffsets[code] = dst;
+
+      while (nextRemoved < removed.length
+          && (int) (removed[nextRemoved] >>> 32) == code) {
+        int at = Arrays.binarySearch(rowIds, src, end,
+            (int) removed[nextRemoved++]);
+
+        System.arraycopy(rowIds, src, newRowIds, dst, at - src);
+        dst += at - src;
+        src = at + 1;
+      }
+
+      System.arraycopy(rowIds, src, newRowIds, dst, end - src);
+      dst += end - src;
+      src = end;
+
+      while (nextAdded < added.length
+          && (int) (added[nextAdded] >>> 32) == code) {
+        newRowIds[dst++] = (int) added[nextAdded++];
+      }
+    }
+
+    newOffsets[numCodes] = dst;
+
+    return new HashIndex(newCodes, newOffsets, newRowIds);
+  }
+
+  /**
+   * Sort rows by code and then by row, each packed into a long as
+   * code &lt;&lt; 32 | row.
+   */
+  private static long[] byCode(int[] rows, int[] column) {
+    long[] packed = new long[rows.length];
+
+    for(int index = 0; index < rows.length; index++) {
+      packed[index] = (long) column[rows[index]] << 32 | rows[index];
+    }
+
+    Arrays.sort(packed);
+
+    return packed;
+  }
+
+  /**
+   * Return the rows that have the given key.
+   *
+   * @param key The key to look up.
+   * @return The row ids in ascending order. The array is empty if no
+   *         rows have the key.
+   */
+  int[] rows(String key) {
+    Integer code = codes.get(key);
+
+    return code == null ? NO_ROWS : rows(code);
+  }
+
+  /**
+   * Return the rows that have the given code.
+   *
+   * @param code The code to look up.
+   * @return The row ids in ascending order.
+   */
+  int[] rows(int code) {
+    if(code < 0 || code >= offsets.length - 1) {
+      return NO_ROWS;
+    }
+
+    return Arrays.copyOfRange(rowIds, offsets[code], offsets[code + 1]);
+  }
+
+  /**
+   * Return the code of the given key.
+   *
+   * @param key The key to look up.
+   * @return The code, or -1 if no rows have the key.
+   */
+  int code(String key) {
+    Integer code = codes.get(key);
+
+    return code == null ? -1 : code;
+  }
+
+  /**
+   * Return the number of rows that have the given key.
+   *
+   * @param key The key to look up.
+   * @return The number of rows.
+   */
+  int count(String key) {
+    Integer code = codes.get(key);
+
+    return code == null ? 0 : offsets[code + 1] - offsets[code];
+  }
+}
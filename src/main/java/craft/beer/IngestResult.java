@@ -0,0 +1,30 @@
+package craft.beer;
+
+import java.util.List;
+import lombok.Value;
+
+/**
+ * This class holds the result of a multi-file ingest (see
+ * {@link BeerIngester}): the merged table of beers and a report of how
+ * each file was parsed.
+ * 
+ * @author Promineo
+ *
+ */
+@Value
+public class IngestResult {
+  /** The beers from every file, with duplicates removed. */
+  private BeerTable table;
+
+  /** A report for each file, in the order the files were merged. */
+  private List<IngestedFile> files;
+
+  /**
+   * The number of beers that were dropped because a later file had a
+   * beer with the same name and brewery.
+   */
+  private int duplicates;
+
+  /** How long the whole ingest took, in milliseconds. */
+  private long millis;
+}
@@ -0,0 +1,28 @@
+package craft.beer;
+
+import java.nio.file.Path;
+import lombok.Value;
+
+/**
+ * This class reports how one file was parsed during a multi-file
+ * ingest (see {@link BeerIngester}).
+ * 
+ * @author Promineo
+ *
+ */
+@Value
+public class IngestedFile {
+  /** The beer data file. */
+  private Path path;
+
+  /** The number of beers parsed from the file. */
+  private int beers;
+
+  /** How long the file took to parse, in milliseconds. */
+  private long millis;
+
+  @Override
+  public String toString() {
+    return path + ": " + beers + " beers in " + millis + " ms";
+  }
+}
@@ -0,0 +1,389 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Reads beer data in JSON Lines format: one JSON object per beer with
+ * the fields ordinal, name, brewery, type, abv, numRatings and
+ * averageRating. The numbers may be JSON numbers or strings, like the
+ * CSV columns. Other fields are skipped, whatever their value.
+ *
+ * Field names are matched against the expected names byte by byte and
+ * string values are unescaped into the reused field array, so no
+ * String is created for a field name or a number.
+ *
+ * @author Promineo
+ *
+ */
+class JsonLinesBeerSource extends ByteBeerSource {
+  private static final byte[][] KEYS = new byte[FIELD_NAMES.length][];
+
+  static {
+    for(int index = 0; index < FIELD_NAMES.length; index++) {
+      KEYS[index] =
+          FIELD_NAMES[index].getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private static final int ALL_FIELDS = (1 << FIELD_NAMES.length) - 1;
+
+  private int ordinal;
+  private String name;
+  private String brewery;
+  private String type;
+  private int abv;
+  private int numRatings;
+  private int averageRating;
+
+  JsonLinesBeerSource(Path path, SymbolTable breweries,
+      SymbolTable types) {
+    super(path, breweries, types);
+  }
+
+  @Override
+  void readRecords(Consumer<? super Beer> consumer) throws IOException {
+    int ch;
+
+    while ((ch = skipWhitespace()) != -1) {
+      startRecord();
+
+      Beer beer;
+
+      try {
+        if(ch != '{') {
+          throw error("'{' expected");
+        }
+
+        beer = readObject();
+      }
+      catch (BadRecordException e) {
+        skip(e);
+        skipLine();
+        continue;
+      }
+
+      consumer.accept(beer);
+    }
+  }
+
+  /**
+   * Read the members of an object after its opening brace.
+   */
+  private Beer readObject() throws IOException {
+    int found = 0;
+    int ch = skipWhitespace();
+
+    while (ch != '}') {
+      if(ch != '"') {
+        throw error("Field name expected");
+      }
+
+      fieldLength = 0;
+      readString();
+
+      int key = key();
+
+      if(skipWhitespace() != ':') {
+        throw error("':' expected");
+      }
+
+      ch = skipWhitespace();
+
+      if(key != -1 && (ch == '"' || ch == '-' || isDigit(ch))) {
+        fieldLength = 0;
+
+        if(ch == '"') {
+          readString();
+        }
+        else {
+          readNumber(ch);
+        }
+
+        set(key);
+        found |= 1 << key;
+      }
+      else {
+        skipValue(ch);
+      }
+
+      ch = skipWhitespace();
+
+      if(ch == ',') {
+        ch = skipWhitespace();
+      }
+      else if(ch != '}') {
+        throw error("',' or '}' expected");
+      }
+    }
+
+    if(found != ALL_FIELDS) {
+      int missing = Integer.numberOfTrailingZeros(~found);
+
+      throw error("Missing field " + FIELD_NAMES[missing]);
+    }
+
+    // @formatter:off
+    return Beer.builder()
+        .abvHundredths(abv)
+        .averageRatingHundredths(averageRating)
+        .brewery(brewery)
+        .ordinal(ordinal)
+        .name(name)
+        .numRatings(numRatings)
+        .type(type)
+        .build();
+    // @formatter:on
+  }
+
+  /**
+   * Return the Beer field whose name is in the field bytes, or -1 if it
+   * is not one of the expected fields.
+   */
+  private int key() {
+    for(int index = 0; index < KEYS.length; index++) {
+      byte[] key = KEYS[index];
+
+      if(key.length != fieldLength) {
+        continue;
+      }
+
+      int pos = 0;
+
+      while (pos < fieldLength && field[pos] == key[pos]) {
+        pos++;
+      }
+
+      if(pos == fieldLength) {
+        return index;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Decode the value in the field bytes into the given Beer field.
+   */
+  private void set(int key) {
+    switch (key) {
+      case ORDINAL:
+        ordinal = parseInt(0, fieldLength, ORDINAL);
+        break;
+
+      case NAME:
+        name = string(0, fieldLength);
+        break;
+
+      case BREWERY:
+        brewery = brewery(0, fieldLength);
+        break;
+
+      case TYPE:
+        type = type(0, fieldLength);
+        break;
+
+      case ABV:
+        abv = parseHundredths(0, fieldLength, ABV);
+        break;
+
+      case NUM_RATINGS:
+        numRatings = parseInt(0, fieldLength, NUM_RATINGS);
+        break;
+
+      default:
+        averageRating = parseHundredths(0, fieldLength, AVERAGE_RATING);
+    }
+  }
+
+  /**
+   * Read a string after its opening quote and add its unescaped UTF-8
+   * bytes to the field bytes.
+   */
+  private void readString() throws IOException {
+    while (true) {
+      int ch = next();
+
+      if(ch == -1) {
+        throw error("Unterminated string");
+      }
+
+      if(ch == '"') {
+        return;
+      }
+
+      if(ch != '\\') {
+        append(ch);
+        continue;
+      }
+
+      ch = next();
+
+      switch (ch) {
+        case 'b':
+          append('\b');
+          break;
+
+        case 'f':
+          append('\f');
+          break;
+
+        case 'n':
+          append('\n');
+          break;
+
+        case 'r':
+          append('\r');
+          break;
+
+        case 't':
+          append('\t');
+          break;
+
+        case 'u':
+          appendCodePoint(readEscapedChar());
+          break;
+
+        case '"':
+        case '\\':
+        case '/':
+          append(ch);
+          break;
+
+        default:
+          throw error("Invalid escape");
+      }
+    }
+  }
+
+  /**
+   * Read the four hex digits of a \\u escape, and a second escape if
+   * the first is the high half of a surrogate pair.
+   */
+  private int readEscapedChar() throws IOException {
+    int ch = readHex();
+
+    if(Character.isHighSurrogate((char) ch) && peek() == '\\') {
+      next();
+
+      if(next() != 'u') {
+        throw error("Invalid escape");
+      }
+
+      int low = readHex();
+
+      return Character.toCodePoint((char) ch, (char) low);
+    }
+
+    return ch;
+  }
+
+  private int readHex() throws IOException {
+    int value = 0;
+
+    for(int count = 0; count < 4; count++) {
+      int digit = Character.digit(next(), 16);
+
+      if(digit == -1) {
+        throw error("Invalid escape");
+      }
+
+      value = value * 16 + digit;
+    }
+
+    return value;
+  }
+
+  /**
+   * Add the UTF-8 bytes of a code point to the field bytes.
+   */
+  private void appendCodePoint(int codePoint) {
+    if(codePoint < 0x80) {
+      append(codePoint);
+    }
+    else if(codePoint < 0x800) {
+      append(0xc0 | codePoint >> 6);
+      append(0x80 | codePoint & 0x3f);
+    }
+    else if(codePoint < 0x10000) {
+      append(0xe0 | codePoint >> 12);
+      append(0x80 | codePoint >> 6 & 0x3f);
+      append(0x80 | codePoint & 0x3f);
+    }
+    else {
+      append(0xf0 | codePoint >> 18);
+      append(0x80 | codePoint >> 12 & 0x3f);
+      append(0x80 | codePoint >> 6 & 0x3f);
+      append(0x80 | codePoint & 0x3f);
+    }
+  }
+
+  /**
+   * Read a number into the field bytes, starting with the byte that
+   * has already been read.
+   */
+  private void readNumber(int ch) throws IOException {
+    append(ch);
+
+    while (isDigit(peek()) || peek() == '.') {
+      append(next());
+    }
+  }
+
+  /**
+   * Skip a value that is not needed, starting with the byte that has
+   * already been read. Objects and arrays are skipped by counting
+   * brackets outside of strings.
+   */
+  private void skipValue(int ch) throws IOException {
+    int depth = 0;
+
+    while (true) {
+      if(ch == -1) {
+        throw error("Unexpected end of file");
+      }
+
+      if(ch == '"') {
+        int start = fieldLength;
+
+        readString();
+        fieldLength = start;
+      }
+      else if(ch == '{' || ch == '[') {
+        depth++;
+      }
+      else if(ch == '}' || ch == ']') {
+        depth--;
+      }
+
+      int nextCh = peek();
+
+      if(depth == 0 && (nextCh == ',' || nextCh == '}' || nextCh == ']'
+          || nextCh == -1 || isWhitespace(nextCh))) {
+        return;
+      }
+
+      ch = next();
+    }
+  }
+
+  private int skipWhitespace() throws IOException {
+    int ch = next();
+
+    while (isWhitespace(ch)) {
+      ch = next();
+    }
+
+    return ch;
+  }
+
+  private static boolean isWhitespace(int ch) {
+    return ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n';
+  }
+
+  private static boolean isDigit(int ch) {
+    return ch >= '0' && ch <= '9';
+  }
+}
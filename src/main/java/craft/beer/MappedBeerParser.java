@@ -0,0 +1,715 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * This class parses beer data directly from a memory-mapped beer data
+ * file. Instead of reading lines into Strings and cutting them apart
+ * with a StringBuilder, it scans the raw bytes for the line ends and
+ * the '|' and '%' separators. The ordinal, ABV, number of ratings and
+ * average rating are decoded straight from the bytes into ints.
+ * Strings are only created for the beer name, brewery and beer type,
+ * and the brewery and beer type are interned so that repeated values
+ * share one String.
+ *
+ * Files larger than a single mapping are mapped a window at a time. A
+ * record that runs off the end of a window is parsed again from the
+ * start of the next window.
+ *
+ * If the parser is given a {@link ParseDiagnostics}, it is lenient: a
+ * record that cannot be parsed is added to the diagnostics and skipped,
+ * and parsing carries on from the next line that starts a record. The
+ * line number and the bad field are only worked out for bad records,
+ * so good records are parsed exactly as in strict mode.
+ *
+ * This class is not thread-safe. Use one parser per thread.
+ *
+ * @author Promineo
+ *
+ */
+class MappedBeerParser {
+  /*
+   * The largest region of the file that is mapped at once. A single
+   * mapping is limited to Integer.MAX_VALUE bytes.
+   */
+  private static final int WINDOW_SIZE = 1 << 30;
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private final SymbolTable breweries;
+  private final SymbolTable types;
+
+  /* Collects bad records in lenient mode. Null in strict mode. */
+  private final ParseDiagnostics diagnostics;
+
+  /* True while skipping to the next record after a bad record. */
+  private boolean resyncing;
+
+  /* The number of lines before countedOffset, for line numbers. */
+  private long countedOffset;
+  private long countedLines;
+
+  /* Used to copy the bytes of a String field out of the mapping. */
+  private byte[] scratch = new byte[256];
+
+  /* The current window. */
+  private ByteBuffer buffer;
+  private int limit;
+  private boolean lastWindow;
+
+  /**
+   * Create a parser that reads from the given channel.
+   *
+   * @param channel The channel of an open beer data file.
+   * @param breweries Interns the brewery of each Beer.
+   * @param types Interns the beer type of each Beer.
+   * @throws IOException Thrown if the size of the file cannot be read.
+   */
+  MappedBeerParser(FileChannel channel, SymbolTable breweries,
+      SymbolTable types) throws IOException {
+    this(channel, breweries, types, null);
+  }
+
+  /**
+   * Create a parser that reads from the given channel.
+   *
+   * @param channel The channel of an open beer data file.
+   * @param breweries Interns the brewery of each Beer.
+   * @param types Interns the beer type of each Beer.
+   * @param diagnostics Collects the records that cannot be parsed, or
+   *        null to throw an exception at the first bad record.
+   * @throws IOException Thrown if the size of the file cannot be read.
+   */
+  MappedBeerParser(FileChannel channel, SymbolTable breweries,
+      SymbolTable types, ParseDiagnostics diagnostics)
+      throws IOException {
+    this.channel = channel;
+    this.fileSize = channel.size();
+    this.breweries = breweries;
+    this.types = types;
+    this.diagnostics = diagnostics;
+  }
+
+  /**
+   * Parse the entire file.
+   *
+   * @param consumer Receives each Beer in file order.
+   * @throws IOException Thrown if the file cannot be mapped.
+   */
+  void parse(Consumer<? super Beer> consumer) throws IOException {
+    parse(0, fileSize, consumer);
+  }
+
+  /**
+   * Parse every record that starts at or after the start offset and
+   * before the end offset. The last record may extend past the end
+   * offset. The start offset must be the start of a record. A partial
+   * record at the end of the file is ignored.
+   *
+   * @param start The file offset of the first record.
+   * @param end Records that start at or after this offset are not
+   *        parsed.
+   * @param consumer Receives each Beer in file order.
+   * @throws IOException Thrown if the file cannot be mapped.
+   */
+  void parse(long start, long end, Consumer<? super Beer> consumer)
+      throws IOException {
+    long windowStart = start;
+
+    while (windowStart < end) {
+      map(windowStart);
+
+      int pos = 0;
+
+      while (windowStart + pos < end) {
+        int next = diagnostics == null ? parseRecord(pos, consumer)
+            : parseRecordLeniently(windowStart, pos, consumer);
+
+        if(next == -1) {
+          break;
+        }
+
+        pos = next;
+      }
+
+      if(windowStart + pos >= end || lastWindow) {
+        return;
+      }
+
+      if(pos == 0) {
+        throw new IllegalStateException(
+            "Record too long at offset " + windowStart);
+      }
+
+      windowStart += pos;
+    }
+  }
+
+  /**
+   * Find the start of the first record that starts at or after the
+   * given file offset. A record start is a line that begins with an
+   * ordinal and is followed by a brewery line and then a beer type
+   * line. The beer type line is the only line that contains the '|'
+   * and '%' separators, so a line that is followed by a type line two
+   * lines later, but that is not a type line itself and is not
+   * followed directly by one, must be the first line of a record.
+   *
+   * @param offset The file offset to search from.
+   * @return The file offset of the record or the file size if there
+   *         are no more records.
+   * @throws IOException Thrown if the file cannot be mapped.
+   */
+  long findRecordStart(long offset) throws IOException {
+    if(offset <= 0) {
+      return 0;
+    }
+
+    /*
+     * Start one byte early so that a line that starts exactly at the
+     * offset is found.
+     */
+    long windowStart = offset - 1;
+    boolean firstWindow = true;
+
+    while (true) {
+      map(windowStart);
+
+      int pos = 0;
+
+      if(firstWindow) {
+        int eol = indexOf('\n', 0, limit);
+
+        if(eol == -1 && lastWindow) {
+          return fileSize;
+        }
+
+        if(eol == -1) {
+          throw new IllegalStateException(
+              "Line too long at offset " + windowStart);
+        }
+
+        pos = eol + 1;
+        firstWindow = false;
+      }
+
+      while (pos < limit) {
+        int eol1 = indexOf('\n', pos, limit);
+        int eol2 = eol1 == -1 ? -1 : indexOf('\n', eol1 + 1, limit);
+        int eol3 = eol2 == -1 ? -1 : indexOf('\n', eol2 + 1, limit);
+
+        if(eol3 == -1 && lastWindow && eol2 != -1) {
+          eol3 = limit;
+        }
+
+        if(eol3 == -1) {
+          break;
+        }
+
+        if(isRecordStart(pos, eol1, eol2, eol3)) {
+          return windowStart + pos;
+        }
+
+        pos = eol1 + 1;
+      }
+
+      if(lastWindow) {
+        return fileSize;
+      }
+
+      if(pos == 0) {
+        throw new IllegalStateException(
+            "Record too long at offset " + windowStart);
+      }
+
+      windowStart += pos;
+    }
+  }
+
+  /**
+   * Map the window of the file that starts at the given offset.
+   *
+   * @param windowStart The file offset of the start of the window.
+   * @throws IOException Thrown if the file cannot be mapped.
+   */
+  private void map(long windowStart) throws IOException {
+    long windowEnd = Math.min(fileSize, windowStart + WINDOW_SIZE);
+
+    buffer = channel.map(MapMode.READ_ONLY, windowStart,
+        windowEnd - windowStart);
+    limit = buffer.limit();
+    lastWindow = windowEnd == fileSize;
+  }
+
+  /**
+   * Return true if the line at the given position starts a record,
+   * given the ends of it and the next two lines. See
+   * {@link #findRecordStart(long)}.
+   */
+  private boolean isRecordStart(int pos, int eol1, int eol2, int eol3) {
+    return isOrdinalLine(pos, eol1)
+        && !isTypeLine(pos, eol1)
+        && !isTypeLine(eol1 + 1, eol2)
+        && isTypeLine(eol2 + 1, eol3);
+  }
+
+  /**
+   * Return true if the line starts with an ordinal followed by a space.
+   */
+  private boolean isOrdinalLine(int start, int end) {
+    int pos = start;
+
+    while (pos < end && isDigit(buffer.get(pos))) {
+      pos++;
+    }
+
+    return pos > start && pos < end && buffer.get(pos) == ' ';
+  }
+
+  /**
+   * Return true if the line contains a '|' followed by a '%'.
+   */
+  private boolean isTypeLine(int start, int end) {
+    int bar = indexOf('|', start, end);
+
+    return bar != -1 && indexOf('%', bar + 1, end) != -1;
+  }
+
+  /**
+   * Parse the 3-line record that starts at the given buffer position.
+   *
+   * @param pos The buffer position of the start of the record.
+   * @param consumer Receives the parsed Beer.
+   * @return The buffer position of the next record or -1 if the record
+   *         is not complete in the current window.
+   */
+  private int parseRecord(int pos, Consumer<? super Beer> consumer) {
+    int eol1 = indexOf('\n', pos, limit);
+    int eol2 = eol1 == -1 ? -1 : indexOf('\n', eol1 + 1, limit);
+
+    if(eol2 == -1) {
+      return -1;
+    }
+
+    int eol3 = indexOf('\n', eol2 + 1, limit);
+    int next = eol3 + 1;
+
+    if(eol3 == -1) {
+      /*
+       * The last line of the file does not need a line terminator.
+       */
+      if(!lastWindow || eol2 + 1 == limit) {
+        return -1;
+      }
+
+      eol3 = limit;
+      next = limit;
+    }
+
+    consumer.accept(parseRecord(pos, lineEnd(pos, eol1), eol1 + 1,
+        lineEnd(eol1 + 1, eol2), eol2 + 1, lineEnd(eol2 + 1, eol3)));
+
+    return next;
+  }
+
+  /**
+   * Parse the three lines of a record. The positions of each line
+   * exclude the line terminator.
+   */
+  private Beer parseRecord(int start1, int end1, int start2, int end2,
+      int start3, int end3) {
+    int space = indexOf(' ', start1, end1);
+
+    if(space == -1) {
+      throw new IllegalStateException("Marker not found:  ");
+    }
+
+    int ordinal = parseInt(start1, space);
+    String name = string(space + 1, end1);
+    String brewery = breweries.intern(string(start2, end2));
+
+    int bar = indexOf('|', start3, end3);
+
+    if(bar == -1) {
+      throw new IllegalStateException("Marker not found: |");
+    }
+
+    int percent = indexOf('%', bar + 1, end3);
+
+    if(percent == -1) {
+      throw new IllegalStateException("Marker not found: %");
+    }
+
+    String type = types.intern(string(start3, bar));
+    int abv = parseHundredths(bar + 1, percent);
+
+    int ratingsStart = trimStart(percent + 1, end3);
+    int ratingsEnd = indexOf(' ', ratingsStart, end3);
+
+    if(ratingsEnd == -1) {
+      throw new IllegalStateException("Marker not found:  ");
+    }
+
+    int numRatings = parseDigits(ratingsStart, ratingsEnd);
+    int avg = parseHundredths(ratingsEnd, end3);
+
+    // @formatter:off
+    return Beer.builder()
+        .abvHundredths(abv)
+        .averageRatingHundredths(avg)
+        .brewery(brewery)
+        .ordinal(ordinal)
+        .name(name)
+        .numRatings(numRatings)
+        .type(type)
+        .build();
+    // @formatter:on
+  }
+
+  /**
+   * Parse the record that starts at the given buffer position like
+   * {@link #parseRecord(int, Consumer)}, but add a bad record to the
+   * diagnostics instead of throwing an exception. After a bad record,
+   * the following lines are skipped until one starts a record.
+   *
+   * @param windowStart The file offset of the current window.
+   * @param pos The buffer position of the start of the record.
+   * @param consumer Receives the parsed Beer.
+   * @return The buffer position of the next record or -1 if the record
+   *         is not complete in the current window.
+   * @throws IOException Thrown if the line number cannot be counted.
+   */
+  private int parseRecordLeniently(long windowStart, int pos,
+      Consumer<? super Beer> consumer) throws IOException {
+    if(resyncing) {
+      int start = nextRecordStart(pos);
+
+      if(start == -1 || start == limit) {
+        return start;
+      }
+
+      pos = start;
+    }
+
+    int eol1 = indexOf('\n', pos, limit);
+    int eol2 = eol1 == -1 ? -1 : indexOf('\n', eol1 + 1, limit);
+
+    if(eol2 == -1) {
+      return -1;
+    }
+
+    int eol3 = indexOf('\n', eol2 + 1, limit);
+    int next = eol3 + 1;
+
+    if(eol3 == -1) {
+      if(!lastWindow || eol2 + 1 == limit) {
+        return -1;
+      }
+
+      eol3 = limit;
+      next = limit;
+    }
+
+    int start1 = pos;
+    int end1 = lineEnd(pos, eol1);
+    int start2 = eol1 + 1;
+    int end2 = lineEnd(start2, eol2);
+    int start3 = eol2 + 1;
+    int end3 = lineEnd(start3, eol3);
+    Beer beer;
+
+    resyncing = false;
+
+    try {
+      beer = parseRecord(start1, end1, start2, end2, start3, end3);
+    }
+    catch (IllegalStateException | NumberFormatException e) {
+      diagnostics.add(lineNumber(windowStart + pos),
+          badField(start1, end1, start3, end3), e.getMessage());
+
+      resyncing = true;
+
+      return eol1 + 1;
+    }
+
+    consumer.accept(beer);
+
+    return next;
+  }
+
+  /**
+   * Find the next line that starts a record.
+   *
+   * @param from The buffer position of the line to start from.
+   * @return The buffer position of the record, the limit if there are
+   *         no more records in the file, or -1 if the window ends
+   *         first.
+   */
+  private int nextRecordStart(int from) {
+    int pos = from;
+
+    while (pos < limit) {
+      int eol1 = indexOf('\n', pos, limit);
+      int eol2 = eol1 == -1 ? -1 : indexOf('\n', eol1 + 1, limit);
+      int eol3 = eol2 == -1 ? -1 : indexOf('\n', eol2 + 1, limit);
+
+      if(eol3 == -1 && lastWindow && eol2 != -1) {
+        eol3 = limit;
+      }
+
+      if(eol3 == -1) {
+        break;
+      }
+
+      if(isRecordStart(pos, eol1, eol2, eol3)) {
+        return pos;
+      }
+
+      pos = eol1 + 1;
+    }
+
+    return lastWindow ? limit : -1;
+  }
+
+  /**
+   * Work out which field of a bad record could not be parsed by
+   * parsing the fields one at a time.
+   */
+  private String badField(int start1, int end1, int start3, int end3) {
+    String field = "ordinal";
+
+    try {
+      int space = indexOf(' ', start1, end1);
+
+      if(space == -1) {
+        return field;
+      }
+
+      parseInt(start1, space);
+
+      field = "type";
+      int bar = indexOf('|', start3, end3);
+
+      if(bar == -1) {
+        return field;
+      }
+
+      field = "abv";
+      int percent = indexOf('%', bar + 1, end3);
+
+      if(percent == -1) {
+        return field;
+      }
+
+      parseHundredths(bar + 1, percent);
+
+      field = "numRatings";
+      int ratingsStart = trimStart(percent + 1, end3);
+      int ratingsEnd = indexOf(' ', ratingsStart, end3);
+
+      if(ratingsEnd == -1) {
+        return field;
+      }
+
+      parseDigits(ratingsStart, ratingsEnd);
+
+      field = "averageRating";
+      parseHundredths(ratingsEnd, end3);
+
+      return "record";
+    }
+    catch (NumberFormatException e) {
+      return field;
+    }
+  }
+
+  /**
+   * Return the line number, from 1, of the line that starts at the
+   * given file offset. Lines are counted by reading the file from where
+   * the last count ended, so this is only used for bad records.
+   */
+  private long lineNumber(long offset) throws IOException {
+    if(offset < countedOffset) {
+      countedOffset = 0;
+      countedLines = 0;
+    }
+
+    ByteBuffer bytes = ByteBuffer.allocate(1 << 16);
+
+    while (countedOffset < offset) {
+      bytes.clear();
+      bytes.limit(
+          (int) Math.min(bytes.capacity(), offset - countedOffset));
+
+      int count = channel.read(bytes, countedOffset);
+
+      if(count <= 0) {
+        break;
+      }
+
+      for(int index = 0; index < count; index++) {
+        if(bytes.get(index) == '\n') {
+          countedLines++;
+        }
+      }
+
+      countedOffset += count;
+    }
+
+    return countedLines + 1;
+  }
+
+  /**
+   * Return the position of the first occurrence of the given byte
+   * between the from position (inclusive) and the to position
+   * (exclusive).
+   *
+   * @return The position of the byte or -1 if not found.
+   */
+  private int indexOf(char ch, int from, int to) {
+    for(int pos = from; pos < to; pos++) {
+      if(buffer.get(pos) == ch) {
+        return pos;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Return the end of the line that ends at the given line terminator,
+   * dropping a carriage return if present.
+   */
+  private int lineEnd(int start, int eol) {
+    return eol > start && buffer.get(eol - 1) == '\r' ? eol - 1 : eol;
+  }
+
+  /**
+   * Return the position of the first non-whitespace byte in the range.
+   */
+  private int trimStart(int from, int to) {
+    while (from < to && isWhitespace(buffer.get(from))) {
+      from++;
+    }
+
+    return from;
+  }
+
+  /**
+   * Return the position after the last non-whitespace byte in the
+   * range.
+   */
+  private int trimEnd(int from, int to) {
+    while (to > from && isWhitespace(buffer.get(to - 1))) {
+      to--;
+    }
+
+    return to;
+  }
+
+  private boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  private boolean isWhitespace(byte b) {
+    return b >= 0 && b <= ' ';
+  }
+
+  /**
+   * Create a trimmed, UTF-8 decoded String from the given range.
+   */
+  private String string(int from, int to) {
+    int start = trimStart(from, to);
+    int len = trimEnd(start, to) - start;
+
+    if(scratch.length < len) {
+      scratch = new byte[Math.max(len, scratch.length * 2)];
+    }
+
+    buffer.get(start, scratch, 0, len);
+
+    return new String(scratch, 0, len, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parse the trimmed range as a non-negative int.
+   */
+  private int parseInt(int from, int to) {
+    int start = trimStart(from, to);
+    int end = trimEnd(start, to);
+
+    if(start == end) {
+      throw new NumberFormatException("Number expected");
+    }
+
+    int value = 0;
+
+    for(int pos = start; pos < end; pos++) {
+      value = value * 10 + digit(pos);
+    }
+
+    return value;
+  }
+
+  /**
+   * Parse the range as an int, ignoring any non-digit characters such
+   * as the commas in "1,795".
+   */
+  private int parseDigits(int from, int to) {
+    int value = 0;
+    boolean found = false;
+
+    for(int pos = from; pos < to; pos++) {
+      byte b = buffer.get(pos);
+
+      if(isDigit(b)) {
+        value = value * 10 + (b - '0');
+        found = true;
+      }
+    }
+
+    if(!found) {
+      throw new NumberFormatException("Number expected");
+    }
+
+    return value;
+  }
+
+  /**
+   * Parse the trimmed range as a decimal number like "4.83" and return
+   * it in hundredths (483), as
+   * {@link Beer#parseHundredths(CharSequence)} does.
+   */
+  private int parseHundredths(int from, int to) {
+    int start = trimStart(from, to);
+    int end = trimEnd(start, to);
+    long state = Beer.HUNDREDTHS_START;
+
+    for(int pos = start; pos < end; pos++) {
+      state = Beer.nextHundredths(state, buffer.get(pos));
+    }
+
+    int value = Beer.hundredths(state);
+
+    if(value < 0) {
+      throw new NumberFormatException("Number expected");
+    }
+
+    return value;
+  }
+
+  private int digit(int pos) {
+    byte b = buffer.get(pos);
+
+    if(!isDigit(b)) {
+      throw new NumberFormatException(
+          "Digit expected: " + (char) (b & 0xff));
+    }
+
+    return b - '0';
+  }
+}
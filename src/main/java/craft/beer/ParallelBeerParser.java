@@ -0,0 +1,182 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class parses a large beer data file on several threads. The file
+ * is split into byte ranges of roughly equal size. Each split is moved
+ * forward to the start of the next record (see
+ * {@link MappedBeerParser#findRecordStart(long)}) so that every record
+ * belongs to exactly one chunk. The chunks are parsed on a
+ * {@link ForkJoinPool} and the results are joined in file order, so the
+ * result is exactly the same as parsing the file on a single thread.
+ *
+ * @author Promineo
+ *
+ */
+class ParallelBeerParser {
+  /*
+   * Files are not split into chunks smaller than this. Small files are
+   * parsed faster on a single thread.
+   */
+  private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+  /*
+   * Create more chunks than threads so that a slow chunk does not keep
+   * the other threads waiting.
+   */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final int parallelism;
+  private final SymbolTable breweries;
+  private final SymbolTable types;
+
+  /**
+   * Create a parser that uses the given number of threads.
+   *
+   * @param parallelism The number of threads. If this is less than 1,
+   *        the number of available processors is used.
+   * @param breweries Interns the brewery of each Beer.
+   * @param types Interns the beer type of each Beer.
+   */
+  ParallelBeerParser(int parallelism, SymbolTable breweries,
+      SymbolTable types) {
+    this.parallelism = parallelism > 0 ? parallelism
+        : Runtime.getRuntime().availableProcessors();
+    this.breweries = breweries;
+    this.types = types;
+  }
+
+  /**
+   * Parse the given beer data file.
+   *
+   * @param path The path to the beer data file.
+   * @return The list of craft beers in file order.
+   * @throws IOException Thrown if the file cannot be read.
+   */
+  List<Beer> parse(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path)) {
+      long[] bounds = chunkBounds(channel);
+      List<List<Beer>> chunks = new ArrayList<>(bounds.length - 1);
+
+      for(int chunk = 0; chunk < bounds.length - 1; chunk++) {
+        chunks.add(null);
+      }
+
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+      try {
+        pool.invoke(
+            new ParseTask(channel, bounds, chunks, 0, chunks.size()));
+      }
+      finally {
+        pool.shutdown();
+      }
+
+      return join(chunks);
+    }
+  }
+
+  /**
+   * Split the file into chunks that each start on a record boundary.
+   *
+   * @param channel The open beer data file.
+   * @return The chunk boundaries. Chunk n starts at bounds[n] and ends
+   *         at bounds[n + 1]. Some chunks may be empty.
+   * @throws IOException Thrown if the file cannot be read.
+   */
+  private long[] chunkBounds(FileChannel channel) throws IOException {
+    long size = channel.size();
+    long numChunks = Math.min((long) parallelism * CHUNKS_PER_THREAD,
+        Math.max(1, size / MIN_CHUNK_SIZE));
+    long[] bounds = new long[(int) numChunks + 1];
+    MappedBeerParser parser =
+        new MappedBeerParser(channel, breweries, types);
+
+    for(int chunk = 1; chunk < numChunks; chunk++) {
+      long split =
+          Math.max(bounds[chunk - 1], size * chunk / numChunks);
+
+      bounds[chunk] = parser.findRecordStart(split);
+    }
+
+    bounds[bounds.length - 1] = size;
+
+    return bounds;
+  }
+
+  /**
+   * Join the chunk results in chunk order.
+   *
+   * @param chunks The Beers parsed from each chunk.
+   * @return All of the Beers.
+   */
+  private List<Beer> join(List<List<Beer>> chunks) {
+    int size = 0;
+
+    for(List<Beer> chunk : chunks) {
+      size += chunk.size();
+    }
+
+    List<Beer> beers = new ArrayList<>(size);
+
+    for(List<Beer> chunk : chunks) {
+      beers.addAll(chunk);
+    }
+
+    return beers;
+  }
+
+  /**
+   * This task parses a range of chunks. If there is more than one chunk
+   * in the range, the range is split in half and each half is parsed
+   * as a separate task.
+   */
+  @SuppressWarnings("serial")
+  private class ParseTask extends RecursiveAction {
+    private final FileChannel channel;
+    private final long[] bounds;
+    private final List<List<Beer>> chunks;
+    private final int from;
+    private final int to;
+
+    ParseTask(FileChannel channel, long[] bounds,
+        List<List<Beer>> chunks, int from, int to) {
+      this.channel = channel;
+      this.bounds = bounds;
+      this.chunks = chunks;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if(to - from > 1) {
+        int mid = (from + to) >>> 1;
+
+        invokeAll(new ParseTask(channel, bounds, chunks, from, mid),
+            new ParseTask(channel, bounds, chunks, mid, to));
+        return;
+      }
+
+      try {
+        List<Beer> beers = new ArrayList<>();
+
+        new MappedBeerParser(channel, breweries, types)
+            .parse(bounds[from], bounds[to], beers::add);
+
+        chunks.set(from, beers);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package craft.beer;
+
+import lombok.Value;
+
+/**
+ * This class describes one beer data record that could not be parsed
+ * and was skipped by a lenient parse (see {@link ParseDiagnostics}).
+ * 
+ * @author Promineo
+ *
+ */
+@Value
+public class ParseDiagnostic {
+  /** The line of the file that the bad record starts on, from 1. */
+  private long line;
+
+  /**
+   * The field that could not be parsed, such as "abv", or "record" if
+   * the record itself is malformed.
+   */
+  private String field;
+
+  /** Why the field could not be parsed. */
+  private String reason;
+
+  @Override
+  public String toString() {
+    return "line " + line + ", " + field + ": " + reason;
+  }
+}
@@ -0,0 +1,78 @@
+package craft.beer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class collects the records that a lenient parse skipped. Passing
+ * a ParseDiagnostics to a parser turns on lenient mode: instead of
+ * stopping at the first record it cannot parse, the parser adds a
+ * {@link ParseDiagnostic} here, skips ahead to the start of the next
+ * record and carries on.
+ *
+ * Only the first few diagnostics are kept, so a file full of bad
+ * records cannot use up memory, but every skipped record is counted.
+ *
+ * This class is thread-safe.
+ *
+ * @author Promineo
+ *
+ */
+public class ParseDiagnostics {
+  private final int capacity;
+  private final List<ParseDiagnostic> diagnostics = new ArrayList<>();
+  private long errorCount;
+
+  /**
+   * Create an empty collection.
+   *
+   * @param capacity The most diagnostics to keep.
+   */
+  public ParseDiagnostics(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Record a skipped record.
+   *
+   * @param line The line the record starts on, from 1.
+   * @param field The field that could not be parsed.
+   * @param reason Why the field could not be parsed.
+   */
+  public synchronized void add(long line, String field, String reason) {
+    errorCount++;
+
+    if(diagnostics.size() < capacity) {
+      diagnostics.add(new ParseDiagnostic(line, field, reason));
+    }
+  }
+
+  /**
+   * Return the diagnostics that were kept.
+   *
+   * @return The first diagnostics, up to the capacity, in the order
+   *         they were added.
+   */
+  public synchronized List<ParseDiagnostic> getDiagnostics() {
+    return new ArrayList<>(diagnostics);
+  }
+
+  /**
+   * Return the number of records that were skipped, including those
+   * whose diagnostics were not kept.
+   *
+   * @return The number of skipped records.
+   */
+  public synchronized long getErrorCount() {
+    return errorCount;
+  }
+
+  /**
+   * Return true if no records were skipped.
+   *
+   * @return True if there were no errors.
+   */
+  public synchronized boolean isEmpty() {
+    return errorCount == 0;
+  }
+}
@@ -0,0 +1,582 @@
+package craft.beer;
+
+import java.util.Arrays;
+
+/**
+ * This class is a compressed set of row ids in the style of a Roaring
+ * bitmap. Row ids are split into a high 16 bits, which selects a
+ * container, and a low 16 bits, which is stored in the container. A
+ * container with few rows holds them as a sorted char array. A
+ * container with many rows holds them as a 65,536 bit bitmap. Sets are
+ * combined with {@link #and(RowBitmap)}, {@link #or(RowBitmap)} and
+ * {@link #andNot(RowBitmap)}, which work a container at a time and
+ * skip containers that cannot contribute to the result.
+ *
+ * A RowBitmap is immutable. Use a {@link Builder} to create one.
+ *
+ * @author Promineo
+ *
+ */
+public class RowBitmap {
+  /* Containers with more rows than this are stored as bitmaps. */
+  private static final int ARRAY_MAX = 4096;
+  private static final int BITMAP_WORDS = 1024;
+
+  private static final RowBitmap EMPTY =
+      new RowBitmap(new char[0], new Container[0], 0);
+
+  private final char[] keys;
+  private final Container[] containers;
+  private final int size;
+
+  private RowBitmap(char[] keys, Container[] containers, int size) {
+    this.keys = keys;
+    this.containers = containers;
+    this.size = size;
+  }
+
+  /**
+   * Return an empty bitmap.
+   *
+   * @return The empty bitmap.
+   */
+  public static RowBitmap empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Create a builder for a new bitmap.
+   *
+   * @return The builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Create a bitmap holding the given row ids.
+   *
+   * @param rows The row ids in ascending order.
+   * @return The bitmap.
+   */
+  public static RowBitmap of(int... rows) {
+    Builder builder = new Builder();
+
+    for(int row : rows) {
+      builder.add(row);
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Return the number of rows in the set.
+   *
+   * @return The number of rows.
+   */
+  public int cardinality() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Return true if the set holds the given row.
+   *
+   * @param row The row id.
+   * @return true if the row is in the set.
+   */
+  public boolean contains(int row) {
+    int index = Arrays.binarySearch(keys, (char) (row >>> 16));
+
+    return index >= 0 && containers[index].contains((char) row);
+  }
+
+  /**
+   * Return the rows that are in both this set and the other set.
+   *
+   * @param other The other set.
+   * @return The intersection.
+   */
+  public RowBitmap and(RowBitmap other) {
+    Builder result = new Builder();
+    int i = 0;
+    int j = 0;
+
+    while (i < keys.length && j < other.keys.length) {
+      if(keys[i] < other.keys[j]) {
+        i++;
+      }
+      else if(keys[i] > other.keys[j]) {
+        j++;
+      }
+      else {
+        result.append(keys[i], containers[i].and(other.containers[j]));
+        i++;
+        j++;
+      }
+    }
+
+    return result.build();
+  }
+
+  /**
+   * Return the rows that are in this set or the other set.
+   *
+   * @param other The other set.
+   * @return The union.
+   */
+  public RowBitmap or(RowBitmap other) {
+    Builder result = new Builder();
+    int i = 0;
+    int j = 0;
+
+    while (i < keys.length || j < other.keys.length) {
+      if(j == other.keys.length
+          || (i < keys.length && keys[i] < other.keys[j])) {
+        result.append(keys[i], containers[i]);
+        i++;
+      }
+      else if(i == keys.length || keys[i] > other.keys[j]) {
+        result.append(other.keys[j], other.containers[j]);
+        j++;
+      }
+      else {
+        result.append(keys[i], containers[i].or(other.containers[j]));
+        i++;
+        j++;
+      }
+    }
+
+    return result.build();
+  }
+
+  /**
+   * Return the rows that are in this set but not in the other set.
+   *
+   * @param other The other set.
+   * @return The difference.
+   */
+  public RowBitmap andNot(RowBitmap other) {
+    Builder result = new Builder();
+    int j = 0;
+
+    for(int i = 0; i < keys.length; i++) {
+      while (j < other.keys.length && other.keys[j] < keys[i]) {
+        j++;
+      }
+
+      if(j < other.keys.length && other.keys[j] == keys[i]) {
+        result.append(keys[i],
+            containers[i].andNot(other.containers[j]));
+      }
+      else {
+        result.append(keys[i], containers[i]);
+      }
+    }
+
+    return result.build();
+  }
+
+  /**
+   * Return the rows in ascending order.
+   *
+   * @return The row ids.
+   */
+  public int[] toArray() {
+    int[] rows = new int[size];
+    int pos = 0;
+
+    for(int i = 0; i < keys.length; i++) {
+      pos = containers[i].copyTo(rows, pos, keys[i] << 16);
+    }
+
+    return rows;
+  }
+
+  @Override
+  public String toString() {
+    return "RowBitmap(cardinality=" + size + ", containers="
+        + keys.length + ")";
+  }
+
+  /**
+   * This class collects row ids for a new bitmap. Rows must be added in
+   * ascending order.
+   */
+  public static class Builder {
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int numContainers;
+    private int size;
+
+    /* The rows of the container that is being filled. */
+    private int currentKey = -1;
+    private char[] current = new char[64];
+    private int currentSize;
+    private long[] currentWords;
+
+    private Builder() {
+    }
+
+    /**
+     * Add a row. Rows must be added in ascending order.
+     *
+     * @param row The row id.
+     * @return This builder.
+     */
+    public Builder add(int row) {
+      int key = row >>> 16;
+
+      if(key != currentKey) {
+        flush();
+        currentKey = key;
+      }
+
+      char low = (char) row;
+
+      if(currentWords != null) {
+        currentWords[low >>> 6] |= 1L << low;
+        currentSize++;
+      }
+      else if(currentSize == ARRAY_MAX) {
+        currentWords = new long[BITMAP_WORDS];
+
+        for(int i = 0; i < currentSize; i++) {
+          currentWords[current[i] >>> 6] |= 1L << current[i];
+        }
+
+        currentWords[low >>> 6] |= 1L << low;
+        currentSize++;
+      }
+      else {
+        if(currentSize == current.length) {
+          current = Arrays.copyOf(current, currentSize * 2);
+        }
+
+        current[currentSize++] = low;
+      }
+
+      return this;
+    }
+
+    /**
+     * Create the bitmap.
+     *
+     * @return The new bitmap.
+     */
+    public RowBitmap build() {
+      flush();
+
+      return numContainers == 0 ? EMPTY
+          : new RowBitmap(Arrays.copyOf(keys, numContainers),
+              Arrays.copyOf(containers, numContainers), size);
+    }
+
+    /**
+     * Add a whole container. Keys must be appended in ascending order.
+     * Empty containers are dropped.
+     */
+    private void append(char key, Container container) {
+      if(container.cardinality() == 0) {
+        return;
+      }
+
+      if(numContainers == keys.length) {
+        keys = Arrays.copyOf(keys, numContainers * 2);
+        containers = Arrays.copyOf(containers, numContainers * 2);
+      }
+
+      keys[numContainers] = key;
+      containers[numContainers++] = container;
+      size += container.cardinality();
+    }
+
+    private void flush() {
+      if(currentSize > 0) {
+        Container container = currentWords != null
+            ? new BitmapContainer(currentWords, currentSize)
+            : new ArrayContainer(Arrays.copyOf(current, currentSize));
+
+        append((char) currentKey, container);
+      }
+
+      currentSize = 0;
+      currentWords = null;
+    }
+  }
+
+  /**
+   * Holds the low 16 bits of the rows that share the same high 16 bits.
+   */
+  private abstract static class Container {
+    abstract int cardinality();
+
+    abstract boolean contains(char low);
+
+    abstract Container and(Container other);
+
+    abstract Container or(Container other);
+
+    abstract Container andNot(Container other);
+
+    /**
+     * Copy the rows into the array, adding the high bits.
+     *
+     * @return The position after the last row copied.
+     */
+    abstract int copyTo(int[] rows, int pos, int high);
+
+    /**
+     * Return the rows as a bitmap. Bitmap containers return their own
+     * words, which must not be changed.
+     */
+    abstract long[] words();
+
+    /**
+     * Create the smallest container for a bitmap.
+     */
+    static Container of(long[] words) {
+      int cardinality = 0;
+
+      for(long word : words) {
+        cardinality += Long.bitCount(word);
+      }
+
+      if(cardinality > ARRAY_MAX) {
+        return new BitmapContainer(words, cardinality);
+      }
+
+      char[] values = new char[cardinality];
+      int pos = 0;
+
+      for(int w = 0; w < words.length; w++) {
+        long word = words[w];
+
+        while (word != 0) {
+          values[pos++] =
+              (char) (w << 6 | Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+
+      return new ArrayContainer(values);
+    }
+  }
+
+  /**
+   * A container that holds its rows in a sorted char array.
+   */
+  private static class ArrayContainer extends Container {
+    private final char[] values;
+
+    ArrayContainer(char[] values) {
+      this.values = values;
+    }
+
+    @Override
+    int cardinality() {
+      return values.length;
+    }
+
+    @Override
+    boolean contains(char low) {
+      return Arrays.binarySearch(values, low) >= 0;
+    }
+
+    @Override
+    Container and(Container other) {
+      char[] result = new char[values.length];
+      int size = 0;
+
+      if(other instanceof ArrayContainer) {
+        char[] others = ((ArrayContainer) other).values;
+        int i = 0;
+        int j = 0;
+
+        while (i < values.length && j < others.length) {
+          if(values[i] < others[j]) {
+            i++;
+          }
+          else if(values[i] > others[j]) {
+            j++;
+          }
+          else {
+            result[size++] = values[i];
+            i++;
+            j++;
+          }
+        }
+      }
+      else {
+        for(char value : values) {
+          if(other.contains(value)) {
+            result[size++] = value;
+          }
+        }
+      }
+
+      return new ArrayContainer(Arrays.copyOf(result, size));
+    }
+
+    @Override
+    Container or(Container other) {
+      if(other instanceof BitmapContainer) {
+        return other.or(this);
+      }
+
+      char[] others = ((ArrayContainer) other).values;
+
+      if(values.length + others.length > ARRAY_MAX) {
+        long[] words = words();
+
+        for(char value : others) {
+          words[value >>> 6] |= 1L << value;
+        }
+
+        return Container.of(words);
+      }
+
+      char[] result = new char[values.length + others.length];
+      int size = 0;
+      int i = 0;
+      int j = 0;
+
+      while (i < values.length || j < others.length) {
+        if(j == others.length
+            || (i < values.length && values[i] < others[j])) {
+          result[size++] = values[i++];
+        }
+        else if(i == values.length || values[i] > others[j]) {
+          result[size++] = others[j++];
+        }
+        else {
+          result[size++] = values[i];
+          i++;
+          j++;
+        }
+      }
+
+      return new ArrayContainer(Arrays.copyOf(result, size));
+    }
+
+    @Override
+    Container andNot(Container other) {
+      char[] result = new char[values.length];
+      int size = 0;
+
+      for(char value : values) {
+        if(!other.contains(value)) {
+          result[size++] = value;
+        }
+      }
+
+      return new ArrayContainer(Arrays.copyOf(result, size));
+    }
+
+    @Override
+    int copyTo(int[] rows, int pos, int high) {
+      for(char value : values) {
+        rows[pos++] = high | value;
+      }
+
+      return pos;
+    }
+
+    @Override
+    long[] words() {
+      long[] words = new long[BITMAP_WORDS];
+
+      for(char value : values) {
+        words[value >>> 6] |= 1L << value;
+      }
+
+      return words;
+    }
+  }
+
+  /**
+   * A container that holds its rows as a 65,536 bit bitmap.
+   */
+  private static class BitmapContainer extends Container {
+    private final long[] words;
+    private final int cardinality;
+
+    BitmapContainer(long[] words, int cardinality) {
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(char low) {
+      return (words[low >>> 6] & 1L << low) != 0;
+    }
+
+    @Override
+    Container and(Container other) {
+      if(other instanceof ArrayContainer) {
+        return other.and(this);
+      }
+
+      long[] others = other.words();
+      long[] result = new long[BITMAP_WORDS];
+
+      for(int w = 0; w < BITMAP_WORDS; w++) {
+        result[w] = words[w] & others[w];
+      }
+
+      return Container.of(result);
+    }
+
+    @Override
+    Container or(Container other) {
+      long[] others = other.words();
+      long[] result = new long[BITMAP_WORDS];
+
+      for(int w = 0; w < BITMAP_WORDS; w++) {
+        result[w] = words[w] | others[w];
+      }
+
+      return Container.of(result);
+    }
+
+    @Override
+    Container andNot(Container other) {
+      long[] others = other.words();
+      long[] result = new long[BITMAP_WORDS];
+
+      for(int w = 0; w < BITMAP_WORDS; w++) {
+        result[w] = words[w] & ~others[w];
+      }
+
+      return Container.of(result);
+    }
+
+    @Override
+    int copyTo(int[] rows, int pos, int high) {
+      for(int w = 0; w < BITMAP_WORDS; w++) {
+        long word = words[w];
+
+        while (word != 0) {
+          rows[pos++] =
+              high | w << 6 | Long.numberOfTrailingZeros(word);
+          word &= word - 1;
+        }
+      }
+
+      return pos;
+    }
+
+    @Override
+    long[] words() {
+      return words;
+    }
+  }
+}
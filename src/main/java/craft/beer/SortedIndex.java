@@ -0,0 +1,225 @@
+package craft.beer;
+
+import java.util.Arrays;
+
+/**
+ * This class indexes the rows of a {@link BeerTable} by the value of a
+ * numeric column such as ABV or rating count. The values are held in
+ * ascending order alongside the row id of each value, so a range of
+ * values is found with two binary searches and the matching row ids are
+ * a contiguous slice of an int array.
+ *
+ * A SortedIndex is immutable.
+ *
+ * @author Promineo
+ *
+ */
+class SortedIndex {
+  private final int[] values;
+  private final int[] rowIds;
+
+  /**
+   * Build an index over a column. The values in the column must not be
+   * negative.
+   *
+   * @param column The value of each row.
+   */
+  SortedIndex(int[] column) {
+    /*
+     * Sort each value together with its row id by packing both into a
+     * long. This sorts primitives, so no objects are created, and rows
+     * with the same value stay in row order.
+     */
+    long[] packed = new long[column.length];
+
+    for(int row = 0; row < column.length; row++) {
+      packed[row] = (long) column[row] << 32 | row;
+    }
+
+    Arrays.sort(packed);
+
+    values = new int[column.length];
+    rowIds = new int[column.length];
+
+    for(int pos = 0; pos < packed.length; pos++) {
+      values[pos] = (int) (packed[pos] >>> 32);
+      rowIds[pos] = (int) packed[pos];
+    }
+  }
+
+  private SortedIndex(int[] values, int[] rowIds) {
+    this.values = values;
+    this.rowIds = rowIds;
+  }
+
+  /**
+   * Create an index for the same column with some rows taken out and
+   * some put in. A changed row is in both lists: it is taken out at its
+   * old value and put in at its new one. The position of each row is
+   * found with a binary search, and the runs of unchanged entries
+   * between those positions are copied in bulk, so only the given rows
+   * are looked at one by one and nothing is sorted except them.
+   *
+   * @param removedRows The rows to take out, in ascending order.
+   * @param oldColumn The value of each row in this index.
+   * @param addedRows The rows to put in, in ascending order.
+   * @param newColumn The new value of each row.
+   * @return The new index, or this index if there are no rows to take
+   *         out or put in. This index is not changed.
+   */
+  SortedIndex update(int[] removedRows, int[] oldColumn,
+      int[] addedRows, int[] newColumn) {
+    if(removedRows.length == 0 && addedRows.length == 0) {
+      return this;
+    }
+
+    int[] removePositions = new int[removedRows.length];
+
+    for(int index = 0; index < removedRows.length; index++) {
+      int row = removedRows[index];
+
+      removePositions[index] =
+          position((long) oldColumn[row] << 32 | row);
+    }
+
+    Arrays.sort(removePositions);
+
+    long[] inserts = new long[addedRows.length];
+
+    for(int index = 0; index < addedRows.length; index++) {
+      int row = addedRows[index];
+
+      inserts[index] = (long) newColumn[row] << 32 | row;
+    }
+
+    Arrays.sort(inserts);
+
+    int size = values.length - removedRows.length + addedRows.length;
+    int[] newValues = new int[size];
+    int[] newRowIds = new int[size];
+    int src = 0;
+    int dst = 0;
+    int nextRemove = 0;
+    int nextInsert = 0;
+    int insertAt = inserts.length == 0 ? values.length
+        : position(inserts[0]);
+
+    while (true) {
+      int removeAt = nextRemove < removePositions.length
+          ? removePositions[nextRemove] : values.length;
+      int copyTo = Math.min(removeAt, insertAt);
+
+      System.arraycopy(values, src, newValues, dst, copyTo - src);
+      System.arraycopy(rowIds, src, newRowIds, dst, copyTo - src);
+      dst += copyTo - src;
+      src = copyTo;
+
+      if(nextInsert < inserts.length && insertAt == src) {
+        newValues[dst] = (int) (inserts[nextInsert] >>> 32);
+        newRowIds[dst++] = (int) inserts[nextInsert++];
+        insertAt = nextInsert < inserts.length
+            ? position(inserts[nextInsert]) : values.length;
+      }
+      else if(nextRemove < removePositions.length && removeAt == src) {
+        src++;
+        nextRemove++;
+      }
+      else {
+        break;
+      }
+    }
+
+    return new SortedIndex(newValues, newRowIds);
+  }
+
+  /**
+   * Return the position of the first entry that is not less than the
+   * given value and row, packed as value &lt;&lt; 32 | row.
+   */
+  private int position(long key) {
+    int low = 0;
+    int high = values.length;
+
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+
+      if(((long) values[mid] << 32 | rowIds[mid]) < key) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+
+  /**
+   * Return the rows with a value from min to max, inclusive.
+   *
+   * @param min The smallest value.
+   * @param max The largest value.
+   * @return The row ids, ordered by value.
+   */
+  int[] rows(int min, int max) {
+    int from = lowerBound(min);
+    int to = Math.max(from, upperBound(max));
+
+    return Arrays.copyOfRange(rowIds, from, to);
+  }
+
+  /**
+   * Count the rows with a value from min to max, inclusive. This only
+   * takes two binary searches, so it is a cheap way to find out how
+   * selective a range is.
+   *
+   * @param min The smallest value.
+   * @param max The largest value.
+   * @return The number of rows.
+   */
+  int count(int min, int max) {
+    return Math.max(0, upperBound(max) - lowerBound(min));
+  }
+
+  /**
+   * Return the position of the first value that is at least min.
+   */
+  private int lowerBound(int min) {
+    int low = 0;
+    int high = values.length;
+
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+
+      if(values[mid] < min) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+
+  /**
+   * Return the position after the last value that is at most max.
+   */
+  private int upperBound(int max) {
+    int low = 0;
+    int high = values.length;
+
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+
+      if(values[mid] <= max) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+}
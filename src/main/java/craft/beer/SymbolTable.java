@@ -0,0 +1,109 @@
+package craft.beer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is a dictionary of String values such as brewery names or
+ * beer types. Each distinct value is given a small int code, in the
+ * order that the values are first seen, and a single shared instance of
+ * the String. When the parser interns a value, every Beer with the same
+ * brewery or type refers to the same String object instead of to its
+ * own copy. Code that groups or compares by brewery or type can use the
+ * int codes instead of comparing Strings.
+ *
+ * This class is thread-safe. Lookups of values that have already been
+ * seen do not lock.
+ *
+ * @author Promineo
+ *
+ */
+public class SymbolTable {
+  private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+  private volatile String[] values = new String[64];
+  private int size;
+
+  /**
+   * Return the code for the given value, adding the value to the table
+   * if it has not been seen before.
+   *
+   * @param value The value to encode.
+   * @return The code for the value.
+   */
+  public int encode(String value) {
+    Integer code = codes.get(value);
+
+    if(code != null) {
+      return code;
+    }
+
+    synchronized (this) {
+      code = codes.get(value);
+
+      if(code == null) {
+        if(size == values.length) {
+          values = Arrays.copyOf(values, size * 2);
+        }
+
+        code = size;
+        values[size++] = value;
+        codes.put(value, code);
+      }
+
+      return code;
+    }
+  }
+
+  /**
+   * Return the shared instance of the given value, adding the value to
+   * the table if it has not been seen before.
+   *
+   * @param value The value to intern.
+   * @return A String equal to the value.
+   */
+  public String intern(String value) {
+    return decode(encode(value));
+  }
+
+  /**
+   * Return the value for the given code.
+   *
+   * @param code A code returned by {@link #encode(String)}.
+   * @return The value.
+   */
+  public String decode(int code) {
+    return values[code];
+  }
+
+  /**
+   * Return the code for the given value without adding it to the
+   * table.
+   *
+   * @param value The value to look up.
+   * @return The code or -1 if the value is not in the table.
+   */
+  public int find(String value) {
+    Integer code = codes.get(value);
+
+    return code == null ? -1 : code;
+  }
+
+  /**
+   * Return the number of distinct values in the table.
+   *
+   * @return The number of values.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Return the values in code order.
+   *
+   * @return A new array holding the values.
+   */
+  public synchronized String[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+}
@@ -0,0 +1,34 @@
+package craft.beer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Reads beer data in the 3-line text format with the memory-mapped
+ * parser (see {@link MappedBeerParser}).
+ *
+ * @author Promineo
+ *
+ */
+class TextBeerSource implements BeerSource {
+  private final Path path;
+  private final SymbolTable breweries;
+  private final SymbolTable types;
+
+  TextBeerSource(Path path, SymbolTable breweries, SymbolTable types) {
+    this.path = path;
+    this.breweries = breweries;
+    this.types = types;
+  }
+
+  @Override
+  public void read(Consumer<? super Beer> consumer,
+      ParseDiagnostics diagnostics) throws IOException {
+    try (FileChannel channel = FileChannel.open(path)) {
+      new MappedBeerParser(channel, breweries, types, diagnostics)
+          .parse(consumer);
+    }
+  }
+}
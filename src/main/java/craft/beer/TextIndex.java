@@ -0,0 +1,282 @@
+package craft.beer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is an inverted index over a text column, such as the beer
+ * names of a {@link BeerTable}. Text is split into words of letters and
+ * digits, which are lower cased, so "Bourbon Barrel-Aged" is indexed
+ * as "bourbon", "barrel" and "aged". For every word, the index holds
+ * each row that contains it and the word's position in that row.
+ *
+ * The positions make phrase queries possible: "barrel aged" only
+ * matches rows where "aged" comes straight after "barrel". The last
+ * word of a query matches any word that starts with it, so "vanilla
+ * bean ass" finds "Vanilla Bean Assassin" but "vanilla ass" does
+ * not.
+ *
+ * A TextIndex is immutable. It is filled by a {@link Builder} one row
+ * at a time, so it can be built while the rows are being parsed.
+ *
+ * @author Promineo
+ *
+ */
+class TextIndex {
+  private static final int[] NO_ROWS = {};
+
+  /* The distinct words in sorted order. */
+  private final String[] terms;
+
+  /*
+   * The postings for term t are postings[offsets[t]] up to, but not
+   * including, postings[offsets[t + 1]]. Each posting is a row id in
+   * the high 32 bits and a word position in the low 32 bits, so they
+   * sort by row, then by position.
+   */
+  private final int[] offsets;
+  private final long[] postings;
+
+  private TextIndex(String[] terms, int[] offsets, long[] postings) {
+    this.terms = terms;
+    this.offsets = offsets;
+    this.postings = postings;
+  }
+
+  /**
+   * Create a builder for a new index.
+   *
+   * @return The builder.
+   */
+  static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Return the number of distinct words in the index.
+   *
+   * @return The number of words.
+   */
+  int numTerms() {
+    return terms.length;
+  }
+
+  /**
+   * Find the rows that contain the words of the query next to each
+   * other and in the same order. The last word of the query matches as
+   * a prefix.
+   *
+   * @param query The words to find.
+   * @return The row ids in ascending order. The array is empty if the
+   *         query has no words.
+   */
+  int[] rows(String query) {
+    String[] words = tokenize(query);
+
+    if(words.length == 0) {
+      return NO_ROWS;
+    }
+
+    /* Each match is the posting of the first word of the phrase. */
+    long[] matches = postings(words[0], words.length == 1);
+
+    for(int index = 1; index < words.length && matches.length > 0;
+        index++) {
+      long[] next = postings(words[index], index == words.length - 1);
+
+      matches = follow(matches, next, index);
+    }
+
+    int[] rows = new int[matches.length];
+    int numRows = 0;
+
+    for(long match : matches) {
+      int row = (int) (match >>> 32);
+
+      if(numRows == 0 || rows[numRows - 1] != row) {
+        rows[numRows++] = row;
+      }
+    }
+
+    return Arrays.copyOf(rows, numRows);
+  }
+
+  /**
+   * Return the postings of a word, sorted by row and position. A prefix
+   * returns the postings of every word that starts with it.
+   */
+  private long[] postings(String word, boolean prefix) {
+    int first = Arrays.binarySearch(terms, word);
+
+    if(!prefix) {
+      return first < 0 ? new long[0]
+          : Arrays.copyOfRange(postings, offsets[first],
+              offsets[first + 1]);
+    }
+
+    if(first < 0) {
+      first = -first - 1;
+    }
+
+    int last = first;
+
+    while (last < terms.length && terms[last].startsWith(word)) {
+      last++;
+    }
+
+    long[] result =
+        Arrays.copyOfRange(postings, offsets[first], offsets[last]);
+
+    if(last - first > 1) {
+      Arrays.sort(result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Keep the phrase matches whose word at the given distance from the
+   * start of the phrase is in the next postings. Both arrays are
+   * sorted, so this is a single merge.
+   */
+  private static long[] follow(long[] matches, long[] next,
+      int distance) {
+    long[] kept = new long[matches.length];
+    int numKept = 0;
+    int j = 0;
+
+    for(long match : matches) {
+      long wanted = match + distance;
+
+      while (j < next.length && next[j] < wanted) {
+        j++;
+      }
+
+      if(j < next.length && next[j] == wanted) {
+        kept[numKept++] = match;
+      }
+    }
+
+    return Arrays.copyOf(kept, numKept);
+  }
+
+  /**
+   * Split text into lower case words.
+   */
+  static String[] tokenize(String text) {
+    String[] words = new String[4];
+    int numWords = 0;
+    StringBuilder word = new StringBuilder();
+
+    for(int pos = 0; pos <= text.length(); pos++) {
+      char ch = pos < text.length() ? text.charAt(pos) : ' ';
+
+      if(Character.isLetterOrDigit(ch)) {
+        word.append(Character.toLowerCase(ch));
+      }
+      else if(word.length() > 0) {
+        if(numWords == words.length) {
+          words = Arrays.copyOf(words, numWords * 2);
+        }
+
+        words[numWords++] = word.toString();
+        word.setLength(0);
+      }
+    }
+
+    return Arrays.copyOf(words, numWords);
+  }
+
+  /**
+   * This class collects the words of each row for a new TextIndex.
+   * Rows must be added in ascending order.
+   */
+  static class Builder {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+
+    /* One entry per word of each row, in the order they were added. */
+    private int size;
+    private int[] entryTerms = new int[DEFAULT_CAPACITY];
+    private long[] entryPostings = new long[DEFAULT_CAPACITY];
+
+    private Builder() {
+    }
+
+    /**
+     * Add the words of a row.
+     *
+     * @param row The row id.
+     * @param text The text of the row.
+     * @return This builder.
+     */
+    Builder add(int row, String text) {
+      String[] words = tokenize(text);
+
+      for(int position = 0; position < words.length; position++) {
+        addWord(words[position], row, position);
+      }
+
+      return this;
+    }
+
+    /**
+     * Create the index. The words are sorted and the postings are
+     * grouped by word with a counting sort, which keeps them in row
+     * order within each word.
+     *
+     * @return The new index.
+     */
+    TextIndex build() {
+      String[] terms = termIds.keySet().toArray(new String[0]);
+
+      Arrays.sort(terms);
+
+      int[] sortedIds = new int[terms.length];
+
+      for(int sorted = 0; sorted < terms.length; sorted++) {
+        sortedIds[termIds.get(terms[sorted])] = sorted;
+      }
+
+      int[] offsets = new int[terms.length + 1];
+
+      for(int entry = 0; entry < size; entry++) {
+        offsets[sortedIds[entryTerms[entry]] + 1]++;
+      }
+
+      for(int term = 0; term < terms.length; term++) {
+        offsets[term + 1] += offsets[term];
+      }
+
+      int[] next = Arrays.copyOf(offsets, terms.length);
+      long[] postings = new long[size];
+
+      for(int entry = 0; entry < size; entry++) {
+        postings[next[sortedIds[entryTerms[entry]]]++] =
+            entryPostings[entry];
+      }
+
+      return new TextIndex(terms, offsets, postings);
+    }
+
+    private void addWord(String term, int row, int position) {
+      Integer termId = termIds.get(term);
+
+      if(termId == null) {
+        termId = termIds.size();
+        termIds.put(term, termId);
+      }
+
+      if(size == entryTerms.length) {
+        entryTerms = Arrays.copyOf(entryTerms, size * 2);
+        entryPostings = Arrays.copyOf(entryPostings, size * 2);
+      }
+
+      entryTerms[size] = termId;
+      entryPostings[size] = (long) row << 32 | position;
+      size++;
+    }
+  }
+}
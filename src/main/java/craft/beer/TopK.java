@@ -0,0 +1,121 @@
+package craft.beer;
+
+/**
+ * This class finds the k best rows of a {@link BeerTable} without
+ * sorting the whole table. It keeps the best rows seen so far in a
+ * bounded binary heap of row ids whose root is the worst of the kept
+ * rows. A row that beats the root replaces it. Offering n rows takes
+ * O(n log k) time and the only allocation is the heap itself.
+ *
+ * A row is better than another if its key is larger. Rows with the
+ * same key are ordered by ordinal, lowest first.
+ *
+ * @author Promineo
+ *
+ */
+class TopK {
+  private final int[] keys;
+  private final int[] ordinals;
+  private final int[] heap;
+  private int size;
+
+  /**
+   * Create an empty heap.
+   *
+   * @param k The number of rows to keep.
+   * @param keys The key of each row.
+   * @param ordinals The ordinal of each row, used to break ties.
+   */
+  TopK(int k, int[] keys, int[] ordinals) {
+    this.keys = keys;
+    this.ordinals = ordinals;
+    this.heap = new int[Math.max(k, 0)];
+  }
+
+  /**
+   * Offer a row. The row is kept if it is one of the k best rows
+   * offered so far.
+   *
+   * @param row The row id.
+   */
+  void offer(int row) {
+    if(size < heap.length) {
+      heap[size] = row;
+      siftUp(size++);
+    }
+    else if(size > 0 && better(row, heap[0])) {
+      heap[0] = row;
+      siftDown(0);
+    }
+  }
+
+  /**
+   * Return the kept rows, best first. This empties the heap.
+   *
+   * @return The row ids.
+   */
+  int[] toSortedArray() {
+    int[] rows = new int[size];
+
+    while (size > 0) {
+      rows[size - 1] = heap[0];
+      heap[0] = heap[--size];
+      siftDown(0);
+    }
+
+    return rows;
+  }
+
+  /**
+   * Return true if row a ranks above row b.
+   */
+  private boolean better(int a, int b) {
+    if(keys[a] != keys[b]) {
+      return keys[a] > keys[b];
+    }
+
+    return ordinals[a] < ordinals[b];
+  }
+
+  private void siftUp(int pos) {
+    int row = heap[pos];
+
+    while (pos > 0) {
+      int parent = (pos - 1) >>> 1;
+
+      if(!better(heap[parent], row)) {
+        break;
+      }
+
+      heap[pos] = heap[parent];
+      pos = parent;
+    }
+
+    heap[pos] = row;
+  }
+
+  private void siftDown(int pos) {
+    int row = heap[pos];
+
+    while (true) {
+      int child = 2 * pos + 1;
+
+      if(child >= size) {
+        break;
+      }
+
+      if(child + 1 < size && better(heap[child], heap[child + 1])) {
+        child++;
+      }
+
+      if(!better(row, heap[child])) {
+        break;
+      }
+
+      heap[pos] = heap[child];
+      pos = child;
+    }
+
+    heap[pos] = row;
+  }
+}
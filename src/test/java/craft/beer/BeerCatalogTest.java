@@ -0,0 +1,299 @@
+package craft.beer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that applying a {@link BeerDiff} to a catalog gives the same
+ * answers as building a new catalog from the new beer data.
+ *
+ * @author Promineo
+ *
+ */
+class BeerCatalogTest {
+  private final CraftBeerService service = new CraftBeerService();
+  private final List<Beer> beers = new ArrayList<>(
+      service.parseBeerTable(service.getBeerFilePath()).asList());
+
+  @Test
+  void applyChangesRatings() {
+    List<Beer> scrape = new ArrayList<>(beers);
+
+    for(int index = 0; index < scrape.size(); index += 7) {
+      scrape.set(index, rerate(scrape.get(index), index % 40 * 3));
+    }
+
+    assertApplied(beers, scrape, 0, 0);
+  }
+
+  @Test
+  void applyAddsAndRemovesBeers() {
+    List<Beer> scrape = new ArrayList<>(beers);
+
+    /* Remove the first beer and every tenth one after it. */
+    scrape.remove(0);
+
+    for(int index = scrape.size() - 1; index > 0; index -= 10) {
+      scrape.remove(index);
+    }
+
+    scrape.set(3, rerate(scrape.get(3), 50));
+    scrape.add(beer(900, "Test Stout",
+        "Toppling Goliath Brewing Company", "American Imperial Stout",
+        497));
+    scrape.add(beer(901, "Test Pilsner", "New Test Brewery",
+        "Czech Pilsener", 390));
+    scrape.add(beer(902, "Test Pilsner", "New Test Brewery",
+        "Czech Pilsener", 390));
+
+    assertApplied(beers, scrape, 26, 3);
+  }
+
+  @Test
+  void addingABeerAtTheTopOnlyMovesTheOthers() {
+    List<Beer> scrape = new ArrayList<>();
+
+    scrape.add(beer(1, "Test Stout", "New Test Brewery",
+        "American Imperial Stout", 499));
+
+    for(Beer beer : beers) {
+      scrape.add(renumber(beer, beer.getOrdinal() + 1));
+    }
+
+    BeerCatalog catalog = new BeerCatalog(BeerTable.of(beers));
+    BeerDiff diff = catalog.diff(scrape.stream());
+
+    assertEquals(0, diff.getChanged().size());
+    assertEquals(1, diff.size());
+    assertEquals(beers.size(), diff.getNumMoved());
+
+    assertApplied(beers, scrape, 0, 1);
+  }
+
+  @Test
+  void applyMovesABeerWhoseTypeChanged() {
+    List<Beer> scrape = new ArrayList<>(beers);
+    Beer beer = scrape.get(5);
+
+    scrape.set(5, beer(beer.getOrdinal(), beer.getName(),
+        beer.getBrewery(), "Test Porter",
+        beer.getAverageRatingHundredths()));
+
+    BeerCatalog applied = assertApplied(beers, scrape, 1, 1);
+
+    assertEquals(beers.size(), applied.size());
+    assertEquals(List.of(scrape.get(5)),
+        applied.findByType("Test Porter"));
+  }
+
+  @Test
+  void applyTwiceAndCompact() {
+    List<Beer> first = new ArrayList<>(beers);
+
+    first.remove(10);
+    first.add(beer(900, "Test Stout", "New Test Brewery",
+        "American Imperial Stout", 450));
+
+    BeerCatalog catalog = assertApplied(beers, first, 1, 1);
+    List<Beer> second = new ArrayList<>(first);
+
+    second.remove(second.size() - 1);
+    second.add(beer(901, "Test Lager", "Another Test Brewery",
+        "Test Lager", 300));
+
+    catalog = assertApplied(catalog, second, 1, 1);
+
+    /* Remove enough beers that the catalog is built again. */
+    List<Beer> third = new ArrayList<>(second.subList(0, 150));
+    BeerCatalog compacted = assertApplied(catalog, third, 100, 0);
+
+    assertEquals(third.size(), compacted.getTable().size());
+  }
+
+  @Test
+  void removedBeersAreLeftOutOfTheListAndStatistics() {
+    List<Beer> scrape = new ArrayList<>(beers);
+
+    /* Remove the strongest beers, so the average ABV goes down. */
+    scrape.sort(Comparator.comparing(Beer::getAbvHundredths));
+    scrape = scrape.subList(0, scrape.size() - 20);
+
+    BeerCatalog catalog = new BeerCatalog(BeerTable.of(beers));
+    BeerCatalog applied = catalog.apply(catalog.diff(scrape.stream()));
+    BeerTable expected = BeerTable.of(scrape);
+
+    assertEquals(beers.size(), applied.getTable().size());
+    assertEquals(scrape.size(), applied.asList().size());
+    assertEquals(sorted(expected.asList()), sorted(applied.asList()));
+    assertEquals(expected.averageAbv(), applied.averageAbv());
+    assertTrue(applied.averageAbv()
+        .compareTo(applied.getTable().averageAbv()) < 0);
+  }
+
+  @Test
+  void applyReturnsTheSameCatalogForAnEmptyDiff() {
+    BeerCatalog catalog = new BeerCatalog(BeerTable.of(beers));
+
+    assertSame(catalog, catalog.apply(catalog.diff(beers.stream())));
+  }
+
+  private BeerCatalog assertApplied(List<Beer> base, List<Beer> scrape,
+      int removed, int added) {
+    return assertApplied(new BeerCatalog(BeerTable.of(base)), scrape,
+        removed, added);
+  }
+
+  /**
+   * Apply the diff to a catalog and compare the result with a catalog
+   * built from the new beers. Rows are numbered differently in the two
+   * catalogs, so beers are compared rather than rows.
+   */
+  private BeerCatalog assertApplied(BeerCatalog catalog,
+      List<Beer> scrape, int removed, int added) {
+    /* Aggregate first so that the statistics are updated. */
+    catalog.aggregate(BeerCatalog.Grouping.BREWERY);
+    catalog.aggregate(BeerCatalog.Grouping.TYPE);
+
+    BeerDiff diff = catalog.diff(scrape.stream());
+
+    assertEquals(removed, diff.getRemoved().size());
+    assertEquals(added, diff.getAdded().size());
+
+    BeerCatalog applied = catalog.apply(diff);
+    BeerCatalog expected = new BeerCatalog(BeerTable.of(scrape));
+
+    assertEquals(expected.size(), applied.size());
+    assertEquals(sorted(expected.asList()), sorted(applied.asList()));
+    assertEquals(expected.averageAbv(), applied.averageAbv());
+    assertEquals(expected.averageRating(), applied.averageRating());
+    assertArrayEquals(expected.abvHistogram(100),
+        applied.abvHistogram(100));
+    assertEquals(sorted(expected.top(scrape.size(),
+        BeerCatalog.Ranking.SCORE, row -> true)),
+        sorted(applied.top(scrape.size(), BeerCatalog.Ranking.SCORE,
+            row -> true)));
+    assertEquals(scores(expected.topByScore(scrape.size())),
+        scores(applied.topByScore(scrape.size())));
+
+    for(Beer beer : scrape) {
+      assertEquals(sorted(expected.findByBrewery(beer.getBrewery())),
+          sorted(applied.findByBrewery(beer.getBrewery())));
+      assertEquals(sorted(expected.findByType(beer.getType())),
+          sorted(applied.findByType(beer.getType())));
+      assertEquals(
+          sorted(expected.beers(
+              expected.breweryBitmap(beer.getBrewery()))),
+          sorted(applied.beers(
+              applied.breweryBitmap(beer.getBrewery()))));
+      assertEquals(
+          sorted(expected.beers(expected.typeBitmap(beer.getType()))),
+          sorted(applied.beers(applied.typeBitmap(beer.getType()))));
+    }
+
+    for(int bucket = 0; bucket < 20; bucket++) {
+      assertEquals(
+          sorted(expected.beers(expected.abvBitmap(0, bucket))),
+          sorted(applied.beers(applied.abvBitmap(0, bucket))));
+    }
+
+    for(int bucket = 30; bucket < 50; bucket++) {
+      assertEquals(
+          sorted(expected.beers(expected.averageRatingBitmap(bucket,
+              bucket + 2))),
+          sorted(applied.beers(applied.averageRatingBitmap(bucket,
+              bucket + 2))));
+    }
+
+    BeerQuery query = BeerQuery.builder().minAbvHundredths(800)
+        .maxAbvHundredths(1200).minAverageRatingHundredths(430).build();
+
+    assertEquals(sorted(expected.find(query)),
+        sorted(applied.find(query)));
+
+    for(String words : List.of("stout", "test", "barrel-aged",
+        "kentu")) {
+      assertEquals(sorted(expected.searchByName(words, 1000)),
+          sorted(applied.searchByName(words, 1000)));
+    }
+
+    assertEquals(sorted(expected.fuzzyFindByName("Test Pilsnr", 2, 10)),
+        sorted(applied.fuzzyFindByName("Test Pilsnr", 2, 10)));
+
+    for(BeerCatalog.Grouping grouping : BeerCatalog.Grouping.values()) {
+      assertEquals(stats(expected.aggregate(grouping)),
+          stats(applied.aggregate(grouping)));
+    }
+
+    assertTrue(applied.diff(scrape.stream()).isEmpty());
+
+    return applied;
+  }
+
+  private static List<Beer> sorted(List<Beer> beers) {
+    return beers.stream()
+        .sorted(Comparator.comparing(Beer::getOrdinal)
+            .thenComparing(Beer::getName))
+        .collect(Collectors.toList());
+  }
+
+  private static List<Integer> scores(List<Beer> beers) {
+    return beers.stream()
+        .map(beer -> BayesianPrior.DEFAULT.score(
+            beer.getAverageRatingHundredths(), beer.getNumRatings()))
+        .collect(Collectors.toList());
+  }
+
+  private static List<BeerGroupStats> stats(
+      List<BeerGroupStats> stats) {
+    return stats.stream()
+        .sorted(Comparator.comparing(BeerGroupStats::getGroup))
+        .collect(Collectors.toList());
+  }
+
+  private static Beer rerate(Beer beer, int numRatings) {
+    return beer(beer.getOrdinal(), beer.getName(), beer.getBrewery(),
+        beer.getType(), beer.getAverageRatingHundredths() - 20,
+        beer.getNumRatings() + numRatings);
+  }
+
+  private static Beer renumber(Beer beer, int ordinal) {
+    // @formatter:off
+    return Beer.builder()
+        .abvHundredths(beer.getAbvHundredths())
+        .averageRatingHundredths(beer.getAverageRatingHundredths())
+        .brewery(beer.getBrewery())
+        .name(beer.getName())
+        .numRatings(beer.getNumRatings())
+        .ordinal(ordinal)
+        .type(beer.getType())
+        .build();
+    // @formatter:on
+  }
+
+  private static Beer beer(int ordinal, String name, String brewery,
+      String type, int rating) {
+    return beer(ordinal, name, brewery, type, rating, 100);
+  }
+
+  private static Beer beer(int ordinal, String name, String brewery,
+      String type, int rating, int numRatings) {
+    // @formatter:off
+    return Beer.builder()
+        .abvHundredths(800)
+        .averageRatingHundredths(rating)
+        .brewery(brewery)
+        .name(name)
+        .numRatings(numRatings)
+        .ordinal(ordinal)
+        .type(type)
+        .build();
+    // @formatter:on
+  }
+}
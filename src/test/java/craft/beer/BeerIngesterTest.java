@@ -0,0 +1,62 @@
+package craft.beer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests that {@link BeerIngester} merges beer data files by the same
+ * key as {@link BeerCatalog#diff(java.util.stream.Stream)}.
+ *
+ * @author Promineo
+ *
+ */
+class BeerIngesterTest {
+  private final CraftBeerService service = new CraftBeerService();
+  private final BeerIngester ingester = new BeerIngester();
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void aBeerWithAnotherTypeInALaterFileReplacesTheEarlierOne() {
+    List<Beer> beers = service.parseBeerFile();
+    List<Beer> later = new ArrayList<>(beers.subList(0, 10));
+    Beer beer = later.get(3);
+
+    // @formatter:off
+    later.set(3, Beer.builder()
+        .abvHundredths(beer.getAbvHundredths())
+        .averageRatingHundredths(beer.getAverageRatingHundredths())
+        .brewery(beer.getBrewery())
+        .name(beer.getName())
+        .numRatings(beer.getNumRatings() + 10)
+        .ordinal(beer.getOrdinal())
+        .type("Test Porter")
+        .build());
+    // @formatter:on
+
+    write("day-1.csv", BeerFormat.CSV, beers);
+    write("day-2.jsonl", BeerFormat.JSONL, later);
+    ReflectionTestUtils.setField(ingester, "craftBeerService", service);
+
+    IngestResult result = ingester.ingest(dir.toString());
+    List<Beer> expected = new ArrayList<>(beers);
+
+    expected.set(3, later.get(3));
+
+    assertEquals(expected, result.getTable().asList());
+    assertEquals(later.size(), result.getDuplicates());
+  }
+
+  private void write(String name, BeerFormat format, List<Beer> beers) {
+    try (BeerWriter writer =
+        BeerWriter.open(dir.resolve(name), format)) {
+      writer.writeAll(beers);
+    }
+  }
+}
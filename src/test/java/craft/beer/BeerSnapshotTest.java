@@ -0,0 +1,155 @@
+package craft.beer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Round-trip tests for {@link BeerSnapshot}, and tests that a stale,
+ * truncated or corrupt snapshot is never loaded.
+ *
+ * @author Promineo
+ *
+ */
+class BeerSnapshotTest {
+  private final CraftBeerService service = new CraftBeerService();
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void readReturnsTheTableThatWasWritten() throws IOException {
+    Path data = service.getBeerFilePath();
+    BeerTable table = service.parseBeerTable(data);
+    long checksum = BeerSnapshot.checksum(data);
+    Path snapshot = dir.resolve("beer.snapshot");
+
+    BeerSnapshot.write(table, checksum, false, snapshot);
+
+    BeerTable loaded = BeerSnapshot.read(snapshot, checksum, false,
+        new SymbolTable(), new SymbolTable(), BayesianPrior.DEFAULT);
+
+    assertEquals(table.asList(), loaded.asList());
+
+    for(int row = 0; row < table.size(); row++) {
+      assertEquals(table.getScoreTenThousandths(row),
+          loaded.getScoreTenThousandths(row));
+    }
+  }
+
+  @Test
+  void readIgnoresAStaleSnapshot() throws IOException {
+    Path snapshot = write(false);
+
+    assertNull(BeerSnapshot.read(snapshot, 42, false, new SymbolTable(),
+        new SymbolTable(), BayesianPrior.DEFAULT));
+  }
+
+  @Test
+  void readIgnoresASnapshotFromTheOtherParseMode() throws IOException {
+    Path snapshot = write(true);
+    long checksum = BeerSnapshot.checksum(service.getBeerFilePath());
+
+    assertNull(BeerSnapshot.read(snapshot, checksum, false,
+        new SymbolTable(), new SymbolTable(), BayesianPrior.DEFAULT));
+  }
+
+  @Test
+  void readIgnoresASnapshotFromAnOlderVersion() throws IOException {
+    Path snapshot = write(false);
+    long checksum = BeerSnapshot.checksum(service.getBeerFilePath());
+
+    try (FileChannel channel =
+        FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(4).putInt(0, 1), 4);
+    }
+
+    assertNull(BeerSnapshot.read(snapshot, checksum, false,
+        new SymbolTable(), new SymbolTable(), BayesianPrior.DEFAULT));
+  }
+
+  @Test
+  void readIgnoresASnapshotWithoutAllOfItsColumns() throws IOException {
+    Path snapshot = write(false);
+    long checksum = BeerSnapshot.checksum(service.getBeerFilePath());
+
+    truncate(snapshot, 100);
+
+    assertNull(BeerSnapshot.read(snapshot, checksum, false,
+        new SymbolTable(), new SymbolTable(), BayesianPrior.DEFAULT));
+  }
+
+  @Test
+  void readRejectsACorruptSnapshot() throws IOException {
+    Path snapshot = write(false);
+    long checksum = BeerSnapshot.checksum(service.getBeerFilePath());
+    long size = Files.size(snapshot);
+
+    truncate(snapshot, size - 10);
+
+    assertThrows(IOException.class, () -> BeerSnapshot.read(snapshot,
+        checksum, false, new SymbolTable(), new SymbolTable(),
+        BayesianPrior.DEFAULT));
+
+    /* Give the first row a brewery code that is not in the file. */
+    write(false);
+
+    try (FileChannel channel =
+        FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+      int rows = service.parseBeerTable().size();
+
+      channel.write(ByteBuffer.allocate(4).putInt(0, 99_999),
+          32 + 4L * rows);
+    }
+
+    assertThrows(IOException.class, () -> BeerSnapshot.read(snapshot,
+        checksum, false, new SymbolTable(), new SymbolTable(),
+        BayesianPrior.DEFAULT));
+  }
+
+  @Test
+  void loadParsesAgainAndRewritesATruncatedSnapshot()
+      throws IOException {
+    Path snapshot = dir.resolve("beer.snapshot");
+    long checksum = BeerSnapshot.checksum(service.getBeerFilePath());
+
+    ReflectionTestUtils.setField(service, "snapshotFile",
+        snapshot.toString());
+
+    BeerTable expected = service.loadBeerTable();
+
+    truncate(snapshot, Files.size(snapshot) - 10);
+
+    assertEquals(expected.asList(), service.loadBeerTable().asList());
+    assertNotNull(BeerSnapshot.read(snapshot, checksum, false,
+        new SymbolTable(), new SymbolTable(), BayesianPrior.DEFAULT));
+  }
+
+  private static void truncate(Path file, long size)
+      throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(size);
+    }
+  }
+
+  private Path write(boolean lenient) throws IOException {
+    Path data = service.getBeerFilePath();
+    Path snapshot = dir.resolve("beer.snapshot");
+
+    BeerSnapshot.write(service.parseBeerTable(data),
+        BeerSnapshot.checksum(data), lenient, snapshot);
+
+    return snapshot;
+  }
+}
@@ -0,0 +1,148 @@
+package craft.beer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round-trip tests: beers written by {@link BeerWriter} are read back
+ * by {@link BeerSource} unchanged. {@link BeerFormat#TEXT} is left out
+ * because it writes the {@link Beer#toString()} form, which is a report
+ * and not a beer data file.
+ *
+ * @author Promineo
+ *
+ */
+class BeerSourceTest {
+  private final CraftBeerService service = new CraftBeerService();
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void csvRoundTrip() throws IOException {
+    assertRoundTrip(BeerFormat.CSV);
+  }
+
+  @Test
+  void jsonLinesRoundTrip() throws IOException {
+    assertRoundTrip(BeerFormat.JSONL);
+  }
+
+  @Test
+  void textSourceMatchesTheStreamingParser() throws IOException {
+    Path data = service.getBeerFilePath();
+    List<Beer> expected;
+
+    try (Stream<Beer> beers = service.streamBeerFile(data)) {
+      expected = new ArrayList<>();
+      beers.forEach(expected::add);
+    }
+
+    assertEquals(BeerSource.Format.TEXT, BeerSource.detect(data));
+    assertEquals(expected, read(data));
+  }
+
+  @Test
+  void diffReadsAnyFormat() {
+    List<Beer> beers = beers();
+    BeerCatalog catalog = new BeerCatalog(BeerTable.of(beers));
+    List<Beer> scrape = new ArrayList<>(beers);
+
+    scrape.set(5, beer(scrape.get(5).getName(), "Très \"Bon\", Inc."));
+    scrape.remove(7);
+    scrape.add(beer("Back\\slash, \"Quoted\"", "New Brewery"));
+
+    Path file = dir.resolve("beers.csv");
+
+    try (BeerWriter writer = BeerWriter.open(file, BeerFormat.CSV)) {
+      writer.writeAll(scrape);
+    }
+
+    BeerDiff diff =
+        catalog.diff(service.openBeerSource(file), null);
+
+    /* The brewery is part of the key, so beer 5 is replaced. */
+    assertEquals(0, diff.getChanged().size());
+    assertEquals(List.of(beers.get(5), beers.get(7)),
+        diff.getRemoved());
+    assertEquals(List.of(scrape.get(5), scrape.get(scrape.size() - 1)),
+        diff.getAdded());
+  }
+
+  @Test
+  void diffSkipsBadRecordsInLenientMode() throws IOException {
+    List<Beer> beers = beers();
+    BeerCatalog catalog = new BeerCatalog(BeerTable.of(beers));
+    Path file = dir.resolve("beers.csv");
+
+    try (BeerWriter writer = BeerWriter.open(file, BeerFormat.CSV)) {
+      writer.writeAll(beers);
+    }
+
+    /* Put a bad record after the header and ten beers. */
+    List<String> lines = new ArrayList<>(Files.readAllLines(file));
+
+    lines.add(11, "11,Bad,Brewery,Type,strong,1,4.00");
+    Files.write(file, lines);
+
+    ParseDiagnostics diagnostics = new ParseDiagnostics(10);
+    BeerDiff diff =
+        catalog.diff(service.openBeerSource(file), diagnostics);
+
+    assertTrue(diff.isEmpty());
+    assertEquals(1, diagnostics.getErrorCount());
+    assertEquals(12, diagnostics.getDiagnostics().get(0).getLine());
+    assertEquals("abv", diagnostics.getDiagnostics().get(0).getField());
+  }
+
+  private void assertRoundTrip(BeerFormat format) throws IOException {
+    List<Beer> beers = beers();
+
+    beers.add(beer("Back\\slash, \"Quoted\"", "Très \"Bon\", Inc."));
+    beers.add(beer("Line\nBreak", "Tab\tBrewery"));
+
+    Path file = dir.resolve("beers." + format.name().toLowerCase());
+
+    try (BeerWriter writer = BeerWriter.open(file, format)) {
+      writer.writeAll(beers);
+    }
+
+    assertEquals(beers, read(file));
+  }
+
+  private List<Beer> beers() {
+    return new ArrayList<>(
+        service.parseBeerTable(service.getBeerFilePath()).asList());
+  }
+
+  private List<Beer> read(Path file) throws IOException {
+    List<Beer> beers = new ArrayList<>();
+
+    BeerSource.open(file, new SymbolTable(), new SymbolTable())
+        .read(beers::add);
+
+    return beers;
+  }
+
+  private static Beer beer(String name, String brewery) {
+    // @formatter:off
+    return Beer.builder()
+        .abvHundredths(1275)
+        .averageRatingHundredths(405)
+        .brewery(brewery)
+        .name(name)
+        .numRatings(12345)
+        .ordinal(999)
+        .type("Sour / Wild Ale")
+        .build();
+    // @formatter:on
+  }
+}
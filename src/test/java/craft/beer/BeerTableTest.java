@@ -0,0 +1,77 @@
+package craft.beer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a {@link BeerTable} only keeps the breweries and beer
+ * types of its own rows in its dictionaries.
+ *
+ * @author Promineo
+ *
+ */
+class BeerTableTest {
+  private final CraftBeerService service = new CraftBeerService();
+
+  @Test
+  void setRejectsAnotherBeerWithoutInterningIt() {
+    SymbolTable breweries = new SymbolTable();
+    SymbolTable types = new SymbolTable();
+    BeerTable.Builder builder = BeerTable.builder(breweries, types)
+        .add(beer("Test Stout", "Test Brewery", "Stout", 450));
+
+    assertThrows(IllegalArgumentException.class, () -> builder.set(0,
+        beer("Test Stout", "Other Brewery", "Porter", 450)));
+
+    builder.set(0, beer("Test Stout", "Test Brewery", "Stout", 460));
+
+    assertEquals(1, breweries.size());
+    assertEquals(1, types.size());
+    assertEquals(460, builder.build().getAverageRatingHundredths(0));
+  }
+
+  @Test
+  void eachParsedTableHasItsOwnDictionaries() {
+    BeerTable first = service.parseBeerTable();
+    BeerTable second = service.parseBeerTable();
+
+    assertArrayEquals(first.getBreweries(), second.getBreweries());
+    assertEquals(0, service.getBreweries().size());
+  }
+
+  @Test
+  void compactDropsBreweriesThatAreGone() {
+    BeerTable.Builder builder = service.newTableBuilder();
+
+    for(int index = 0; index < 8; index++) {
+      builder.add(beer("Test Beer " + index, "Brewery " + index % 2,
+          "Stout", 400 + index));
+    }
+
+    BeerTable table = builder.build();
+    BeerTable compacted =
+        table.compact(RowBitmap.of(new int[] {1, 3, 5, 7}));
+
+    assertEquals(2, table.getBreweries().length);
+    assertArrayEquals(new String[] {"Brewery 0"},
+        compacted.getBreweries());
+    assertEquals(4, compacted.size());
+  }
+
+  private static Beer beer(String name, String brewery, String type,
+      int rating) {
+    // @formatter:off
+    return Beer.builder()
+        .abvHundredths(800)
+        .averageRatingHundredths(rating)
+        .brewery(brewery)
+        .name(name)
+        .numRatings(100)
+        .ordinal(1)
+        .type(type)
+        .build();
+    // @formatter:on
+  }
+}
@@ -0,0 +1,43 @@
+package craft.beer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the hundredths decoder shared by the parsers.
+ *
+ * @author Promineo
+ *
+ */
+class BeerTest {
+  @Test
+  void parseHundredthsRoundsLikeBigDecimal() {
+    for(String number : new String[] {"0", "4", "4.", "4.8", "4.83",
+        "4.835", "4.8349", "4.83999", ".5", "12.005", "21474836.47",
+        "21474836.474"}) {
+      int expected = new BigDecimal(number)
+          .setScale(2, RoundingMode.HALF_UP).unscaledValue().intValue();
+
+      assertEquals(expected, Beer.parseHundredths(number), number);
+      assertEquals(expected, Beer.toHundredths(new BigDecimal(number)),
+          number);
+    }
+  }
+
+  @Test
+  void parseHundredthsRejectsBadNumbers() {
+    for(String number : new String[] {"", ".", "1.2.3", "4.8x", "-1",
+        "21474836.48", "21474836.475", "99999999999"}) {
+      assertThrows(NumberFormatException.class,
+          () -> Beer.parseHundredths(number), number);
+    }
+  }
+
+  @Test
+  void toHundredthsKeepsTheSign() {
+    assertEquals(-483, Beer.toHundredths(new BigDecimal("-4.825")));
+  }
+}
@@ -0,0 +1,73 @@
+package craft.beer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for parsing beer data that has already been read into memory
+ * with {@link CraftBeerService#parseBeerLines(List)}. How the parse
+ * time scales with the number of records is measured by the
+ * parseBeerLines benchmark in ParserBenchmark, not here.
+ *
+ * @author Promineo
+ *
+ */
+class CraftBeerServiceTest {
+  private final CraftBeerService service = new CraftBeerService();
+
+  @Test
+  void parseBeerLinesMatchesParseBeerFile() throws IOException {
+    List<String> rawlines =
+        Files.readAllLines(service.getBeerFilePath());
+    List<String> copy = new ArrayList<>(rawlines);
+
+    assertEquals(service.parseBeerFile(),
+        service.parseBeerLines(rawlines));
+    assertEquals(copy, rawlines, "The raw lines were modified");
+  }
+
+  @Test
+  void parseBeerLinesReadsEveryRecord() throws IOException {
+    List<String> rawlines =
+        Files.readAllLines(service.getBeerFilePath());
+    List<Beer> beers = service.parseBeerFile();
+
+    for(int size : new int[] {0, 1, 250, 5_000}) {
+      List<Beer> parsed =
+          service.parseBeerLines(records(rawlines, size));
+
+      assertEquals(size, parsed.size());
+
+      for(int index = 0; index < size; index++) {
+        assertEquals(beers.get(index % beers.size()),
+            parsed.get(index));
+      }
+    }
+  }
+
+  /**
+   * Return the raw lines of the given number of records, repeating the
+   * records in the bundled beer data as often as needed.
+   */
+  private static List<String> records(List<String> rawlines,
+      int numRecords) {
+    int linesPerCopy = rawlines.size() / 3 * 3;
+
+    return new AbstractList<>() {
+      @Override
+      public String get(int index) {
+        return rawlines.get(index % linesPerCopy);
+      }
+
+      @Override
+      public int size() {
+        return numRecords * 3;
+      }
+    };
+  }
+}